@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.securenetwizard.encryption.enigma.CompiledEnigma;
+import com.securenetwizard.encryption.enigma.EnigmaMachine;
+import com.securenetwizard.encryption.enigma.InputPolicy;
+
+/**
+ * Encryption and decryption of messages from 16 B to 16 MB through the
+ * {@code String}, in-place {@code byte[]} and direct {@code ByteBuffer} APIs of
+ * {@link EnigmaMachine} and {@link CompiledEnigma}, and of clear text with
+ * spaces, punctuation and digits under {@link InputPolicy#FOLD}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncryptBenchmark {
+
+	@Param({ "16", "1024", "65536", "1048576", "16777216" })
+	public int size;
+
+	private final int[] positions = { 0, 0, 0 };
+
+	private EnigmaMachine machine;
+	private CompiledEnigma compiled;
+	private String clear;
+	private String cypher;
+	private byte[] bytes;
+	private ByteBuffer directSrc;
+	private ByteBuffer directDst;
+	private CompiledEnigma folding;
+	private ByteBuffer dirtySrc;
+	private ByteBuffer dirtyDst;
+
+	@Setup
+	public void setup() {
+		machine = new EnigmaMachine();
+		machine.setRotors("V I IV");
+		machine.setReflector("B");
+		machine.setPlugboard("SZ GT DV KU FO MY EW JN IX LQ");
+		machine.setInitialPositions(positions);
+
+		compiled = machine.compile();
+
+		clear = Texts.letters(size);
+		cypher = machine.encrypt(clear);
+
+		bytes = clear.getBytes(StandardCharsets.US_ASCII);
+		directSrc = ByteBuffer.allocateDirect(size).put(bytes);
+		directDst = ByteBuffer.allocateDirect(size);
+
+		folding = machine.compile();
+		folding.setInputPolicy(InputPolicy.FOLD);
+		dirtySrc = ByteBuffer.wrap(Texts.clearText(size).getBytes(StandardCharsets.US_ASCII));
+		dirtyDst = ByteBuffer.allocate(size);
+	}
+
+	@Benchmark
+	public String encrypt() {
+		machine.setInitialPositions(positions);
+		return machine.encrypt(clear);
+	}
+
+	@Benchmark
+	public String decrypt() {
+		machine.setInitialPositions(positions);
+		return machine.decrypt(cypher);
+	}
+
+	@Benchmark
+	public String compiledEncrypt() {
+		compiled.setInitialPositions(positions);
+		return compiled.encrypt(clear);
+	}
+
+	@Benchmark
+	public String compiledDecrypt() {
+		compiled.setInitialPositions(positions);
+		return compiled.decrypt(cypher);
+	}
+
+	@Benchmark
+	public byte[] encryptBytes() {
+		machine.setInitialPositions(positions);
+		machine.encrypt(bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	@Benchmark
+	public ByteBuffer encryptDirectBuffer() {
+		machine.setInitialPositions(positions);
+		machine.encrypt(directSrc.clear(), directDst.clear());
+		return directDst;
+	}
+
+	@Benchmark
+	public byte[] compiledEncryptBytes() {
+		compiled.setInitialPositions(positions);
+		compiled.encrypt(bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	@Benchmark
+	public ByteBuffer compiledEncryptDirectBuffer() {
+		compiled.setInitialPositions(positions);
+		compiled.encrypt(directSrc.clear(), directDst.clear());
+		return directDst;
+	}
+
+	@Benchmark
+	public ByteBuffer compiledFoldDirtyBytes() {
+		folding.setInitialPositions(positions);
+		folding.encrypt(dirtySrc.clear(), dirtyDst.clear());
+		return dirtyDst;
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.securenetwizard.encryption.enigma.EnigmaMachine;
+import com.securenetwizard.encryption.enigma.EscapeCodec;
+
+/**
+ * {@link EnigmaMachine#escape(String)} and
+ * {@link EnigmaMachine#unescape(String)} over clear text containing every
+ * escaped character, and the same through the {@link EscapeCodec} buffer
+ * methods into preallocated buffers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EscapeBenchmark {
+
+	@Param({ "16", "1024", "65536", "1048576", "16777216" })
+	public int size;
+
+	private String clear;
+	private String escaped;
+
+	private final EscapeCodec codec = new EscapeCodec();
+	private ByteBuffer clearBuf;
+	private ByteBuffer escapedBuf;
+	private ByteBuffer dst;
+
+	@Setup
+	public void setup() {
+		clear = Texts.clearText(size);
+		escaped = EnigmaMachine.escape(clear);
+
+		clearBuf = ByteBuffer.wrap(clear.getBytes(StandardCharsets.US_ASCII));
+		escapedBuf = ByteBuffer.wrap(escaped.getBytes(StandardCharsets.US_ASCII));
+		dst = ByteBuffer.allocate(2 * size);
+	}
+
+	@Benchmark
+	public String escape() {
+		return EnigmaMachine.escape(clear);
+	}
+
+	@Benchmark
+	public ByteBuffer escapeBuffer() {
+		clearBuf.clear();
+		dst.clear();
+		codec.escape(clearBuf, dst);
+
+		return dst;
+	}
+
+	@Benchmark
+	public String unescape() {
+		return EnigmaMachine.unescape(escaped);
+	}
+
+	@Benchmark
+	public ByteBuffer unescapeBuffer() {
+		escapedBuf.clear();
+		dst.clear();
+		codec.unescape(escapedBuf, dst, true);
+
+		return dst;
+	}
+}
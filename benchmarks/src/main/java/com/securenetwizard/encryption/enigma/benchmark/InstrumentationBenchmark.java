@@ -0,0 +1,100 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.securenetwizard.encryption.enigma.EnigmaMachine;
+import com.securenetwizard.encryption.enigma.EnigmaMetrics;
+
+/**
+ * Cost of the {@link EnigmaMetrics} instrumentation on
+ * {@link EnigmaMachine#encrypt(byte[], int, int)}. Each benchmark runs the same
+ * code in its own fork: {@code disabled} with the counters off and no
+ * recording, {@code counters} with {@code -Denigma.metrics=true}, and
+ * {@code recording} with the counters on and a flight recording capturing the
+ * events. {@code disabled} should match an uninstrumented build.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class InstrumentationBenchmark {
+
+	@Param({ "16", "1024", "65536" })
+	public int size;
+
+	private final int[] positions = { 0, 0, 0 };
+
+	private EnigmaMachine machine;
+	private byte[] bytes;
+
+	@Setup
+	public void setup() {
+		machine = new EnigmaMachine();
+		machine.setRotors("V I IV");
+		machine.setReflector("B");
+		machine.setPlugboard("SZ GT DV KU FO MY EW JN IX LQ");
+
+		bytes = Texts.letters(size).getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private byte[] encrypt() {
+		machine.setInitialPositions(positions);
+		machine.encrypt(bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = "-Denigma.metrics=false")
+	public byte[] disabled() {
+		return encrypt();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = "-Denigma.metrics=true")
+	public byte[] counters() {
+		return encrypt();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { "-Denigma.metrics=true", "-XX:StartFlightRecording" })
+	public byte[] recording() {
+		return encrypt();
+	}
+}
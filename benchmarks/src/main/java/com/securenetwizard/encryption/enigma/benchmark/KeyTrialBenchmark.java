@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.securenetwizard.encryption.enigma.BitslicedKeyTrial;
+import com.securenetwizard.encryption.enigma.CompiledEnigma;
+import com.securenetwizard.encryption.enigma.EnigmaKey;
+import com.securenetwizard.encryption.enigma.EnigmaMachine;
+import com.securenetwizard.encryption.enigma.TextScorer;
+
+/**
+ * Keys tested per second by the ciphertext-only search: decrypting a cypher
+ * text from a start position with an empty plugboard and scoring it by index
+ * of coincidence. Each invocation tests 64 consecutive start positions of one
+ * rotor order through the scalar {@link EnigmaMachine} rotors, the compiled
+ * scrambler table and the {@link BitslicedKeyTrial} kernel. Throughput is
+ * reported in keys per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyTrialBenchmark {
+
+	private static final int KEYS = BitslicedKeyTrial.LANES;
+
+	private static final int[] ROTORS = { 1, 3, 0 };
+
+	@Param({ "100", "300" })
+	public int length;
+
+	private byte[] cypher;
+	private byte[] buf;
+	private final int[] counts = new int[26];
+	private final double[] scores = new double[KEYS];
+	private int first;
+
+	private EnigmaMachine machine;
+	private CompiledEnigma cursor;
+	private BitslicedKeyTrial trial;
+
+	@Setup
+	public void setup() {
+		final String cypherText = Texts.letters(length);
+
+		cypher = cypherText.getBytes(StandardCharsets.US_ASCII);
+		buf = new byte[length];
+
+		machine = new EnigmaMachine();
+		machine.setRotors(ROTORS);
+		cursor = EnigmaKey.of("II IV I", "B", "").newCursor("AAA");
+		trial = new BitslicedKeyTrial(cypherText, ROTORS, 0);
+	}
+
+	private double score() {
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = 0;
+		for (int i = 0; i < length; i++)
+			counts[buf[i] - 'A']++;
+
+		return TextScorer.indexOfCoincidence(counts, length);
+	}
+
+	private int nextFirst() {
+		final int position = first;
+		first = (first + KEYS) % (CompiledEnigma.POSITIONS - KEYS);
+
+		return position;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public double machine() {
+		final int position = nextFirst();
+
+		double best = 0;
+		for (int key = 0; key < KEYS; key++) {
+			final int p = position + key;
+			machine.setInitialPositions(p % 26, (p / 26) % 26, p / 676);
+
+			System.arraycopy(cypher, 0, buf, 0, length);
+			machine.decrypt(buf, 0, length);
+			best = Math.max(best, score());
+		}
+
+		return best;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public double compiledTable() {
+		final int position = nextFirst();
+
+		double best = 0;
+		for (int key = 0; key < KEYS; key++) {
+			cursor.setPosition(position + key);
+
+			System.arraycopy(cypher, 0, buf, 0, length);
+			cursor.decrypt(buf, 0, length);
+			best = Math.max(best, score());
+		}
+
+		return best;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public double[] bitsliced() {
+		trial.score(nextFirst(), scores);
+
+		return scores;
+	}
+}
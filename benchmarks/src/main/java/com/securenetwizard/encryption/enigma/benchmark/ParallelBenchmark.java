@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.securenetwizard.encryption.enigma.CompiledEnigma;
+import com.securenetwizard.encryption.enigma.EnigmaMachine;
+import com.securenetwizard.encryption.enigma.ParallelEnigma;
+
+/**
+ * Sequential versus parallel chunked encryption of large messages. Run with
+ * different {@code -Djava.util.concurrent.ForkJoinPool.common.parallelism}
+ * values (through {@code -jvmArgsAppend}) to measure scaling with cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelBenchmark {
+
+	@Param({ "1048576", "16777216" })
+	public int size;
+
+	private final int[] positions = { 0, 0, 0 };
+
+	private CompiledEnigma compiled;
+	private ParallelEnigma parallel;
+	private byte[] bytes;
+
+	@Setup
+	public void setup() {
+		EnigmaMachine machine = new EnigmaMachine();
+		machine.setRotors("V I IV");
+		machine.setReflector("B");
+		machine.setPlugboard("SZ GT DV KU FO MY EW JN IX LQ");
+		machine.setInitialPositions(positions);
+
+		compiled = machine.compile();
+		parallel = new ParallelEnigma(machine);
+		bytes = Texts.letters(size).getBytes(StandardCharsets.US_ASCII);
+	}
+
+	@Benchmark
+	public byte[] sequential() {
+		compiled.setInitialPositions(positions);
+		compiled.encrypt(bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	@Benchmark
+	public byte[] parallel() {
+		parallel.encrypt(bytes, 0, bytes.length);
+		return bytes;
+	}
+}
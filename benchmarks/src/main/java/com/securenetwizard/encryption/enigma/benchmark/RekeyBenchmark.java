@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.securenetwizard.encryption.enigma.EnigmaMachine;
+import com.securenetwizard.encryption.enigma.Plugboard;
+
+/**
+ * Cost of re-keying an existing {@link EnigmaMachine}: selecting rotors,
+ * reflector and plugboard the way a per-message key change does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RekeyBenchmark {
+
+	private final int[] rotorNumbers = { 4, 0, 3 };
+	private final int[] plugboardWiring = Plugboard.parseWiring("SZ GT DV KU FO MY EW JN IX LQ");
+
+	private EnigmaMachine machine;
+
+	@Setup
+	public void setup() {
+		machine = new EnigmaMachine();
+	}
+
+	@Benchmark
+	public EnigmaMachine setRotors() {
+		machine.setRotors(rotorNumbers);
+		return machine;
+	}
+
+	@Benchmark
+	public EnigmaMachine setRotorsString() {
+		machine.setRotors("V I IV");
+		return machine;
+	}
+
+	@Benchmark
+	public EnigmaMachine setReflector() {
+		machine.setReflector("C");
+		return machine;
+	}
+
+	@Benchmark
+	public EnigmaMachine setPlugboard() {
+		machine.setPlugboard("SZ GT DV KU FO MY EW JN IX LQ");
+		return machine;
+	}
+
+	@Benchmark
+	public EnigmaMachine setPlugboardWiring() {
+		machine.setPlugboard(plugboardWiring);
+		return machine;
+	}
+
+	@Benchmark
+	public EnigmaMachine setPositionsAndRings() {
+		machine.setRingSettings("B U L");
+		machine.setInitialPositions("R F K");
+		return machine;
+	}
+
+	@Benchmark
+	public EnigmaMachine rekey() {
+		machine.setRotors("V I IV");
+		machine.setReflector("C");
+		machine.setPlugboard("SZ GT DV KU FO MY EW JN IX LQ");
+		return machine;
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * Reproducible benchmark inputs. All texts are generated from a fixed seed so
+ * that runs on different machines process the same data.
+ */
+final class Texts {
+
+	private static final long SEED = 0x5EC0DE;
+
+	private static final String CLEAR_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ .,?!:;0123456789";
+
+	/**
+	 * Generates random upper case letters A to Z, as produced by
+	 * {@code EnigmaMachine.escape}.
+	 *
+	 * @param length the number of characters
+	 * @return the generated text
+	 */
+	static String letters(int length) {
+		SplittableRandom random = new SplittableRandom(SEED);
+		char[] b = new char[length];
+		for (int i = 0; i < length; i++)
+			b[i] = (char) ('A' + random.nextInt(26));
+
+		return new String(b);
+	}
+
+	/**
+	 * Generates clear text containing letters, punctuation, spaces and digits,
+	 * i.e. every character that {@code EnigmaMachine.escape} replaces.
+	 *
+	 * @param length the number of characters
+	 * @return the generated text
+	 */
+	static String clearText(int length) {
+		SplittableRandom random = new SplittableRandom(SEED);
+		char[] b = new char[length];
+		for (int i = 0; i < length; i++)
+			b[i] = CLEAR_ALPHABET.charAt(random.nextInt(CLEAR_ALPHABET.length()));
+
+		return new String(b);
+	}
+
+	private Texts() {
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.securenetwizard.encryption.enigma.BatchEnigma.MessageRequest;
+
+/**
+ * Wire format of the encryption server. Every frame starts with its length, a
+ * 4 byte big-endian integer counting the bytes that follow, then the request
+ * id chosen by the client. Responses carry the id of their request and may
+ * arrive in any order, so a client can have many requests in flight on one
+ * connection.
+ *
+ * <pre>
+ * request:  length:int id:int opcode:byte
+ *           rotors:str8 reflector:str8 plugboard:str8 positions:str8
+ *           text:bytes[rest]
+ * response: length:int id:int status:byte text:bytes[rest]
+ * </pre>
+ *
+ * <p>
+ * A {@code str8} is one unsigned length byte followed by that many US-ASCII
+ * characters. The key fields use the same notation as the setters of
+ * {@code EnigmaMachine}, for example {@code "V I IV"}, {@code "B"},
+ * {@code "SZ GT DV"} and {@code "QEV"}. The text is US-ASCII letters A to Z,
+ * or on an {@link #ERROR} response the error message.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class EnigmaProtocol {
+
+	/**
+	 * The port the server listens on by default.
+	 */
+	public static final int DEFAULT_PORT = 7026;
+
+	/**
+	 * The largest frame accepted, not counting the length field.
+	 */
+	public static final int MAX_FRAME = 16 * 1024 * 1024;
+
+	/** Opcode of an encryption request */
+	public static final int ENCRYPT = 1;
+
+	/** Opcode of a decryption request */
+	public static final int DECRYPT = 2;
+
+	/** Status of a processed request */
+	public static final int OK = 0;
+
+	/** Status of a rejected request, the text is the error message */
+	public static final int ERROR = 1;
+
+	/** The length and id fields */
+	static final int HEADER_SIZE = 8;
+
+	/**
+	 * Encodes a request frame.
+	 *
+	 * @param id      the request id
+	 * @param opcode  {@link #ENCRYPT} or {@link #DECRYPT}
+	 * @param request the key and message
+	 * @return the frame, ready to be written
+	 * @throws IllegalArgumentException if a key field is longer than 255
+	 *                                  characters or the frame is too large
+	 */
+	public static ByteBuffer encodeRequest(int id, int opcode, MessageRequest request) {
+		final byte[] rotors = ascii(request.getRotors());
+		final byte[] reflector = ascii(request.getReflector());
+		final byte[] plugboard = ascii(request.getPlugboard());
+		final byte[] positions = ascii(request.getPositions());
+		final byte[] text = request.getText().getBytes(StandardCharsets.US_ASCII);
+
+		final int length = 4 + 1
+				+ 4 + rotors.length + reflector.length + plugboard.length + positions.length
+				+ text.length;
+		if (length > MAX_FRAME)
+			throw new IllegalArgumentException("request too large " + length);
+
+		ByteBuffer frame = ByteBuffer.allocate(4 + length)
+				.putInt(length)
+				.putInt(id)
+				.put((byte) opcode);
+
+		putField(frame, rotors);
+		putField(frame, reflector);
+		putField(frame, plugboard);
+		putField(frame, positions);
+
+		return frame.put(text).flip();
+	}
+
+	/**
+	 * Encodes a response frame.
+	 *
+	 * @param id     the request id
+	 * @param status {@link #OK} or {@link #ERROR}
+	 * @param text   the processed text or the error message
+	 * @return the frame, ready to be written
+	 */
+	public static ByteBuffer encodeResponse(int id, int status, String text) {
+		final byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+
+		return ByteBuffer.allocate(HEADER_SIZE + 1 + bytes.length)
+				.putInt(4 + 1 + bytes.length)
+				.putInt(id)
+				.put((byte) status)
+				.put(bytes)
+				.flip();
+	}
+
+	/**
+	 * Gets the length of the complete frame at the buffer's position.
+	 *
+	 * @param buf the received bytes, ready to be read
+	 * @return the frame length including the length field, or -1 if the frame
+	 *         has not been fully received
+	 * @throws IllegalArgumentException if the length field is invalid
+	 */
+	public static int frameLength(ByteBuffer buf) {
+		if (buf.remaining() < 4)
+			return -1;
+
+		final int length = buf.getInt(buf.position());
+		if (length < 5 || length > MAX_FRAME)
+			throw new IllegalArgumentException("invalid frame length " + length);
+
+		return (buf.remaining() < 4 + length) ? -1 : 4 + length;
+	}
+
+	/**
+	 * Decodes the key and message of a request frame.
+	 *
+	 * @param frame the frame, positioned after the opcode, limited to the frame
+	 * @return the request
+	 * @throws IllegalArgumentException if a field overruns the frame
+	 */
+	static MessageRequest decodeRequest(ByteBuffer frame) {
+		final String rotors = getField(frame);
+		final String reflector = getField(frame);
+		final String plugboard = getField(frame);
+		final String positions = getField(frame);
+		final String text = getString(frame, frame.remaining());
+
+		return new MessageRequest(rotors, reflector, plugboard, positions, text);
+	}
+
+	private static byte[] ascii(String field) {
+		final byte[] bytes = field.getBytes(StandardCharsets.US_ASCII);
+		if (bytes.length > 255)
+			throw new IllegalArgumentException("key field too long " + field);
+
+		return bytes;
+	}
+
+	private static String getField(ByteBuffer frame) {
+		if (!frame.hasRemaining())
+			throw new IllegalArgumentException("truncated request");
+
+		return getString(frame, frame.get() & 0xFF);
+	}
+
+	private static String getString(ByteBuffer frame, int len) {
+		if (frame.remaining() < len)
+			throw new IllegalArgumentException("truncated request");
+
+		final byte[] bytes = new byte[len];
+		frame.get(bytes);
+
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	private static void putField(ByteBuffer frame, byte[] field) {
+		frame.put((byte) field.length).put(field);
+	}
+
+	private EnigmaProtocol() {
+	}
+}
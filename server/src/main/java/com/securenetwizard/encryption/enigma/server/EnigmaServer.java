@@ -0,0 +1,463 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.securenetwizard.encryption.enigma.BatchEnigma;
+import com.securenetwizard.encryption.enigma.BatchEnigma.MessageRequest;
+
+/**
+ * Non-blocking encryption server. One selector thread accepts connections,
+ * reads request frames and writes response frames, in the format of
+ * {@link EnigmaProtocol}. The requests read from a connection in one pass are
+ * handed as a batch to {@link BatchEnigma} on a fixed pool of worker threads,
+ * each keeping its own machine, and every response is written as soon as its
+ * batch completes.
+ *
+ * <p>
+ * Clients may pipeline many requests on one connection without waiting for
+ * the responses. A connection stops being read once it has
+ * {@code maxInFlight} requests whose responses have not been written, and is
+ * read again when half of them have been written, so a client that does not
+ * read its responses can not make the server buffer without bound.
+ * </p>
+ *
+ * <pre>
+ * try (EnigmaServer server = new EnigmaServer(new InetSocketAddress(7026), 4)) {
+ * 	server.start();
+ * 	...
+ * }
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class EnigmaServer implements Closeable {
+
+	/**
+	 * The default number of unanswered requests read from one connection.
+	 */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+	/**
+	 * The number of requests processed by a single worker task.
+	 */
+	private static final int GROUP_SIZE = 16;
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * One client connection. Only the selector thread reads and writes the
+	 * channel, workers queue their responses and schedule a flush.
+	 */
+	private class Connection {
+
+		private final SocketChannel channel;
+		private final SelectionKey key;
+		private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+		/** Selector thread only */
+		private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		private int inFlight;
+		private boolean paused;
+
+		Connection(SocketChannel channel) throws IOException {
+			this.channel = channel;
+			this.key = channel.register(selector, SelectionKey.OP_READ, this);
+		}
+
+		void close() {
+			key.cancel();
+			try {
+				channel.close();
+			} catch (IOException e) {
+				/* Nothing left to release */
+			}
+		}
+
+		/**
+		 * Decodes one request frame, queueing an error response right away if it
+		 * is invalid.
+		 */
+		private void decode(ByteBuffer frame, List<MessageRequest> requests, List<Integer> ids) {
+			final int id = frame.getInt(4);
+			final int opcode = frame.get(EnigmaProtocol.HEADER_SIZE);
+			frame.position(EnigmaProtocol.HEADER_SIZE + 1);
+
+			inFlight++;
+			try {
+				if (opcode != EnigmaProtocol.ENCRYPT && opcode != EnigmaProtocol.DECRYPT)
+					throw new IllegalArgumentException("invalid opcode " + opcode);
+
+				requests.add(EnigmaProtocol.decodeRequest(frame));
+				ids.add(id);
+
+			} catch (IllegalArgumentException e) {
+				responses.add(EnigmaProtocol.encodeResponse(id, EnigmaProtocol.ERROR, e.getMessage()));
+				schedule();
+			}
+		}
+
+		/**
+		 * Writes queued responses until the socket buffer is full, then waits for
+		 * it to drain. Resumes reading once enough responses have been written.
+		 */
+		void flush() throws IOException {
+			if (!key.isValid())
+				return;
+
+			ByteBuffer response;
+			while ((response = responses.peek()) != null) {
+				channel.write(response);
+				if (response.hasRemaining())
+					break;
+
+				responses.poll();
+				inFlight--;
+			}
+
+			int ops = (response == null)
+					? key.interestOps() & ~SelectionKey.OP_WRITE
+					: key.interestOps() | SelectionKey.OP_WRITE;
+
+			if (paused && inFlight <= maxInFlight / 2) {
+				paused = false;
+				ops |= SelectionKey.OP_READ;
+			}
+
+			key.interestOps(ops);
+		}
+
+		/**
+		 * Reads the available bytes and submits every complete request frame as
+		 * one batch.
+		 */
+		void read() throws IOException {
+			if (channel.read(in) < 0) {
+				close();
+				return;
+			}
+
+			final List<MessageRequest> requests = new ArrayList<>();
+			final List<Integer> ids = new ArrayList<>();
+
+			in.flip();
+			int length;
+			while ((length = EnigmaProtocol.frameLength(in)) > 0) {
+				final ByteBuffer frame = in.slice();
+				frame.limit(length);
+				in.position(in.position() + length);
+
+				decode(frame, requests, ids);
+			}
+
+			/* Grow for a partial frame larger than the buffer, shrink back once it is consumed */
+			final int needed = (in.remaining() >= 4) ? 4 + in.getInt(in.position()) : 0;
+			final int capacity = Math.max(needed, READ_BUFFER_SIZE);
+			if (capacity != in.capacity()) {
+				ByteBuffer resized = ByteBuffer.allocate(capacity);
+				resized.put(in);
+				in = resized;
+
+			} else {
+				in.compact();
+			}
+
+			if (!requests.isEmpty())
+				submit(requests, ids);
+
+			if (inFlight >= maxInFlight) {
+				paused = true;
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+			}
+		}
+
+		/**
+		 * Queues a response from a worker thread.
+		 */
+		private void respond(int id, int status, String text) {
+			responses.add(EnigmaProtocol.encodeResponse(id, status, text));
+		}
+
+		/**
+		 * Asks the selector thread to flush this connection.
+		 */
+		private void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				flushQueue.add(this);
+				selector.wakeup();
+			}
+		}
+
+		/**
+		 * Processes a batch of requests. If any request has an invalid key the
+		 * batch fails as a whole, and its requests are processed again one by one
+		 * so each gets its own response.
+		 */
+		private void submit(List<MessageRequest> requests, List<Integer> ids) {
+			batch.encryptAllAsync(requests).whenComplete((result, error) -> {
+				if (error == null) {
+					final List<String> results = result.getResults();
+					for (int i = 0; i < results.size(); i++)
+						respond(ids.get(i), EnigmaProtocol.OK, results.get(i));
+
+					schedule();
+					return;
+				}
+
+				for (int i = 0; i < requests.size(); i++) {
+					final int id = ids.get(i);
+					batch.encryptAllAsync(List.of(requests.get(i))).whenComplete((single, e) -> {
+						if (e == null)
+							respond(id, EnigmaProtocol.OK, single.getResults().get(0));
+						else
+							respond(id, EnigmaProtocol.ERROR, errorMessage(e));
+
+						schedule();
+					});
+				}
+			});
+		}
+	}
+
+	private static String errorMessage(Throwable e) {
+		if (e instanceof CompletionException && e.getCause() != null)
+			e = e.getCause();
+
+		return String.valueOf(e.getMessage());
+	}
+
+	/**
+	 * Runs the server until the process is stopped.
+	 *
+	 * <pre>
+	 * [--port 7026] [--workers 4]
+	 * </pre>
+	 *
+	 * @param args command line arguments
+	 * @throws IOException if the server can not listen on the port
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length % 2 != 0)
+			throw new IllegalArgumentException("usage: [--port 7026] [--workers 4]");
+
+		int port = EnigmaProtocol.DEFAULT_PORT;
+		int workers = Runtime.getRuntime().availableProcessors();
+		for (int i = 0; i < args.length; i += 2) {
+			switch (args[i]) {
+			case "--port":
+				port = Integer.parseInt(args[i + 1]);
+				break;
+			case "--workers":
+				workers = Integer.parseInt(args[i + 1]);
+				break;
+			default:
+				throw new IllegalArgumentException("invalid option " + args[i]);
+			}
+		}
+
+		EnigmaServer server = new EnigmaServer(new InetSocketAddress(port), workers);
+		System.out.printf("listening on %s with %d workers%n", server.start(), workers);
+	}
+
+	private final InetSocketAddress address;
+	private final int maxInFlight;
+	private final ExecutorService workers;
+	private final BatchEnigma batch;
+	private final Queue<Connection> flushQueue = new ConcurrentLinkedQueue<>();
+
+	private Selector selector;
+	private ServerSocketChannel server;
+	private Thread thread;
+	private volatile boolean running;
+
+	/**
+	 * Creates a server.
+	 *
+	 * @param address the address to listen on, port 0 for any free port
+	 * @param workers the number of worker threads
+	 */
+	public EnigmaServer(InetSocketAddress address, int workers) {
+		this(address, workers, DEFAULT_MAX_IN_FLIGHT);
+	}
+
+	/**
+	 * Creates a server.
+	 *
+	 * @param address     the address to listen on, port 0 for any free port
+	 * @param workers     the number of worker threads
+	 * @param maxInFlight the number of unanswered requests read from one
+	 *                    connection before it stops being read
+	 */
+	public EnigmaServer(InetSocketAddress address, int workers, int maxInFlight) {
+		if (workers <= 0)
+			throw new IllegalArgumentException("workers must be positive " + workers);
+		if (maxInFlight <= 0)
+			throw new IllegalArgumentException("maxInFlight must be positive " + maxInFlight);
+
+		this.address = address;
+		this.maxInFlight = maxInFlight;
+		this.workers = Executors.newFixedThreadPool(workers, r -> {
+			Thread t = new Thread(r, "enigma-worker");
+			t.setDaemon(true);
+			return t;
+		});
+		this.batch = new BatchEnigma(this.workers, GROUP_SIZE);
+	}
+
+	private void accept() throws IOException {
+		final SocketChannel channel = server.accept();
+		if (channel == null)
+			return;
+
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		new Connection(channel);
+	}
+
+	/**
+	 * Stops the server, closing every connection. Requests in progress are
+	 * dropped.
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		if (selector != null)
+			selector.wakeup();
+
+		if (thread != null) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		workers.shutdownNow();
+	}
+
+	/**
+	 * The selector loop.
+	 */
+	private void run() {
+		try {
+			while (running) {
+				selector.select();
+
+				Connection c;
+				while ((c = flushQueue.poll()) != null) {
+					c.scheduled.set(false);
+					service(c, SelectionKey.OP_WRITE);
+				}
+
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while (it.hasNext()) {
+					final SelectionKey key = it.next();
+					it.remove();
+
+					if (!key.isValid())
+						continue;
+
+					if (key.isAcceptable())
+						accept();
+					else
+						service((Connection) key.attachment(), key.readyOps());
+				}
+			}
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+
+		} finally {
+			for (SelectionKey key : selector.keys())
+				if (key.attachment() instanceof Connection)
+					((Connection) key.attachment()).close();
+
+			try {
+				server.close();
+				selector.close();
+			} catch (IOException e) {
+				/* Nothing left to release */
+			}
+		}
+	}
+
+	/**
+	 * Reads or writes a connection, closing it on an I/O or protocol error.
+	 */
+	private void service(Connection c, int readyOps) {
+		try {
+			if ((readyOps & SelectionKey.OP_READ) != 0)
+				c.read();
+
+			if ((readyOps & SelectionKey.OP_WRITE) != 0)
+				c.flush();
+
+		} catch (IOException | IllegalArgumentException e) {
+			c.close();
+		}
+	}
+
+	/**
+	 * Binds the server and starts the selector thread.
+	 *
+	 * @return the address the server listens on
+	 * @throws IOException if the address can not be bound
+	 */
+	public InetSocketAddress start() throws IOException {
+		if (thread != null)
+			throw new IllegalStateException("already started");
+
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(address);
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+
+		running = true;
+		thread = new Thread(this::run, "enigma-selector");
+		thread.start();
+
+		return (InetSocketAddress) server.getLocalAddress();
+	}
+}
@@ -0,0 +1,368 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.securenetwizard.encryption.enigma.BatchEnigma.MessageRequest;
+
+/**
+ * Load generator for {@link EnigmaServer}. Each connection keeps a fixed
+ * number of requests in flight, sending a new one as soon as a response
+ * arrives, and measures the latency of every request from its write to the
+ * arrival of its response. After a warm up, it reports the sustained requests
+ * per second and the latency percentiles.
+ *
+ * <pre>
+ * [--host 127.0.0.1] [--port 7026] [--connections 4] [--depth 64]
+ *     [--length 64] [--warmup 2] [--seconds 10] [--embedded 4]
+ * </pre>
+ *
+ * <p>
+ * With {@code --embedded} a server with that many workers is started in the
+ * same process, on a free loopback port.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class LoadGenerator {
+
+	/** Distinct request frames sent round robin by each connection */
+	private static final int FRAMES = 64;
+
+	/** Daily keys shared by the generated requests */
+	private static final String[][] KEYS = {
+			{ "V I IV", "B", "SZ GT DV KU FO MY EW JN IX LQ" },
+			{ "II IV III", "C", "AB CD EF GH IJ KL" },
+			{ "III II I", "B", "" },
+	};
+
+	/**
+	 * A thread body that may fail.
+	 */
+	private interface Task {
+		void run() throws Exception;
+	}
+
+	/**
+	 * One connection with its sender and receiver threads. The ids of the
+	 * requests in flight are slots of the connection, so a slot is reused only
+	 * after its response has arrived.
+	 */
+	private class Connection {
+
+		private final SocketChannel channel;
+		private final ByteBuffer[] frames = new ByteBuffer[FRAMES];
+		private final ArrayBlockingQueue<Integer> free;
+		private final AtomicLongArray sent;
+
+		/** Receiver thread only */
+		private long[] latencies = new long[1024];
+		private int count;
+		private long errors;
+
+		Connection(InetSocketAddress address, Random random) throws IOException {
+			this.channel = SocketChannel.open(address);
+			this.channel.socket().setTcpNoDelay(true);
+			this.free = new ArrayBlockingQueue<>(depth);
+			this.sent = new AtomicLongArray(depth);
+
+			for (int i = 0; i < depth; i++)
+				free.add(i);
+
+			for (int i = 0; i < FRAMES; i++) {
+				final String[] key = KEYS[random.nextInt(KEYS.length)];
+				frames[i] = EnigmaProtocol.encodeRequest(0, EnigmaProtocol.ENCRYPT,
+						new MessageRequest(key[0], key[1], key[2], letters(random, 3), letters(random, length)));
+			}
+		}
+
+		private void readFully(ByteBuffer buf) throws IOException {
+			while (buf.hasRemaining())
+				if (channel.read(buf) < 0)
+					throw new EOFException();
+		}
+
+		/**
+		 * Reads responses until the server closes the connection.
+		 */
+		void receive() throws IOException {
+			ByteBuffer header = ByteBuffer.allocate(EnigmaProtocol.HEADER_SIZE + 1);
+			ByteBuffer body = ByteBuffer.allocate(length + 1024);
+
+			while (true) {
+				header.clear();
+				try {
+					readFully(header);
+				} catch (EOFException e) {
+					return;
+				}
+
+				final long now = System.nanoTime();
+				final int bodyLength = header.getInt(0) - 5;
+				final int id = header.getInt(4);
+				final int status = header.get(EnigmaProtocol.HEADER_SIZE);
+
+				if (body.capacity() < bodyLength)
+					body = ByteBuffer.allocate(bodyLength);
+				body.clear().limit(bodyLength);
+				readFully(body);
+
+				final long start = sent.get(id);
+				free.add(id);
+
+				if (status != EnigmaProtocol.OK)
+					errors++;
+
+				if (start >= measureStart && now <= measureEnd) {
+					if (count == latencies.length)
+						latencies = Arrays.copyOf(latencies, count * 2);
+					latencies[count++] = now - start;
+				}
+			}
+		}
+
+		/**
+		 * Sends requests until the end of the run, then waits for the responses
+		 * in flight and shuts down the output, which makes the server close the
+		 * connection.
+		 */
+		void send() throws IOException, InterruptedException {
+			int next = 0;
+			while (System.nanoTime() < measureEnd) {
+				final Integer slot = free.poll(100, TimeUnit.MILLISECONDS);
+				if (slot == null)
+					continue;
+
+				final ByteBuffer frame = frames[next++ % FRAMES];
+				frame.clear().putInt(4, slot);
+
+				sent.set(slot, System.nanoTime());
+				while (frame.hasRemaining())
+					channel.write(frame);
+			}
+
+			while (free.size() < depth)
+				Thread.sleep(1);
+
+			channel.shutdownOutput();
+		}
+	}
+
+	private static String letters(Random random, int len) {
+		final char[] b = new char[len];
+		for (int i = 0; i < len; i++)
+			b[i] = (char) ('A' + random.nextInt(26));
+
+		return new String(b);
+	}
+
+	private static long percentile(long[] sorted, double q) {
+		if (sorted.length == 0)
+			return 0;
+
+		final int index = (int) Math.ceil(q * sorted.length) - 1;
+
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+
+	private static Thread thread(Task task, List<Throwable> failures) {
+		Thread t = new Thread(() -> {
+			try {
+				task.run();
+
+			} catch (Exception e) {
+				synchronized (failures) {
+					failures.add(e);
+				}
+			}
+		}, "enigma-load");
+		t.start();
+
+		return t;
+	}
+
+	/**
+	 * Runs the load generator.
+	 *
+	 * @param args command line arguments
+	 * @throws Exception if a connection fails
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length % 2 != 0)
+			throw new IllegalArgumentException("usage: [--host 127.0.0.1] [--port 7026] [--connections 4] "
+					+ "[--depth 64] [--length 64] [--warmup 2] [--seconds 10] [--embedded 4]");
+
+		String host = "127.0.0.1";
+		int port = EnigmaProtocol.DEFAULT_PORT;
+		int connections = 4;
+		int depth = 64;
+		int length = 64;
+		int warmup = 2;
+		int seconds = 10;
+		int embedded = 0;
+		for (int i = 0; i < args.length; i += 2) {
+			final int value = args[i].equals("--host") ? 0 : Integer.parseInt(args[i + 1]);
+			switch (args[i]) {
+			case "--host":
+				host = args[i + 1];
+				break;
+			case "--port":
+				port = value;
+				break;
+			case "--connections":
+				connections = value;
+				break;
+			case "--depth":
+				depth = value;
+				break;
+			case "--length":
+				length = value;
+				break;
+			case "--warmup":
+				warmup = value;
+				break;
+			case "--seconds":
+				seconds = value;
+				break;
+			case "--embedded":
+				embedded = value;
+				break;
+			default:
+				throw new IllegalArgumentException("invalid option " + args[i]);
+			}
+		}
+
+		InetSocketAddress address = new InetSocketAddress(host, port);
+		EnigmaServer server = null;
+		if (embedded > 0) {
+			server = new EnigmaServer(new InetSocketAddress("127.0.0.1", 0), embedded);
+			address = server.start();
+		}
+
+		try {
+			System.out.println(new LoadGenerator(depth, length).run(address, connections, warmup, seconds));
+
+		} finally {
+			if (server != null)
+				server.close();
+		}
+	}
+
+	private final int depth;
+	private final int length;
+
+	private volatile long measureStart;
+	private volatile long measureEnd;
+
+	/**
+	 * Creates a load generator.
+	 *
+	 * @param depth  the number of requests kept in flight on each connection
+	 * @param length the number of letters of each message
+	 */
+	public LoadGenerator(int depth, int length) {
+		if (depth <= 0)
+			throw new IllegalArgumentException("depth must be positive " + depth);
+		if (length < 0)
+			throw new IllegalArgumentException("length must not be negative " + length);
+
+		this.depth = depth;
+		this.length = length;
+	}
+
+	/**
+	 * Runs the load and reports the results.
+	 *
+	 * @param address     the server address
+	 * @param connections the number of connections
+	 * @param warmup      the seconds of load before measuring
+	 * @param seconds     the seconds of load measured
+	 * @return the report, requests per second and latency percentiles
+	 * @throws IOException          if a connection fails
+	 * @throws InterruptedException if interrupted while waiting for the run
+	 */
+	public String run(InetSocketAddress address, int connections, int warmup, int seconds)
+			throws IOException, InterruptedException {
+
+		final long now = System.nanoTime();
+		measureStart = now + TimeUnit.SECONDS.toNanos(warmup);
+		measureEnd = measureStart + TimeUnit.SECONDS.toNanos(seconds);
+
+		final Random random = new Random(0);
+		final List<Connection> clients = new ArrayList<>();
+		final List<Thread> threads = new ArrayList<>();
+		final List<Throwable> failures = new ArrayList<>();
+
+		for (int i = 0; i < connections; i++) {
+			final Connection c = new Connection(address, random);
+			clients.add(c);
+
+			threads.add(thread(() -> c.send(), failures));
+			threads.add(thread(() -> c.receive(), failures));
+		}
+
+		for (Thread t : threads)
+			t.join();
+
+		for (Connection c : clients)
+			c.channel.close();
+
+		if (!failures.isEmpty())
+			throw new IOException("load generator failed", failures.get(0));
+
+		long errors = 0;
+		long[] all = new long[0];
+		for (Connection c : clients) {
+			errors += c.errors;
+
+			final int from = all.length;
+			all = Arrays.copyOf(all, from + c.count);
+			System.arraycopy(c.latencies, 0, all, from, c.count);
+		}
+		Arrays.sort(all);
+
+		return String.format("%d connections x %d in flight, %d letters: %d requests in %d s, %.0f req/s, "
+				+ "latency p50=%.1f p99=%.1f p999=%.1f max=%.1f us, %d errors",
+				connections, depth, length,
+				all.length, seconds, all.length / (double) seconds,
+				percentile(all, 0.50) / 1e3,
+				percentile(all, 0.99) / 1e3,
+				percentile(all, 0.999) / 1e3,
+				percentile(all, 1.0) / 1e3,
+				errors);
+	}
+}
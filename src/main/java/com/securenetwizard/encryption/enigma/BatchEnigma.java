@@ -0,0 +1,389 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Batch encryption of many short, independent messages, each with its own key.
+ * The batch is split into groups of messages, and the groups are processed
+ * concurrently on an {@link Executor}. The results are returned in the order
+ * of the requests, together with latency statistics for the batch.
+ *
+ * <p>
+ * Every executor thread keeps one {@link EnigmaMachine} and one scratch buffer,
+ * which are reused for all the messages it processes. The rotors, reflector and
+ * plugboard are only set up again when a message's key differs from the
+ * previous message on that thread, so a batch sharing a daily key only resets
+ * the start positions for each message. A sized platform pool, such as
+ * {@link java.util.concurrent.Executors#newFixedThreadPool(int)} with one thread
+ * per core, gets the most reuse, since the work is bound by the CPU.
+ * </p>
+ *
+ * <p>
+ * Enigma decryption is the same operation as encryption, so a batch of cypher
+ * texts with their keys is decrypted by {@link #encryptAll(Collection)} as
+ * well.
+ * </p>
+ *
+ * <pre>
+ * BatchEnigma batch = new BatchEnigma(Executors.newFixedThreadPool(4), BatchEnigma.DEFAULT_GROUP_SIZE);
+ * BatchEnigma.BatchResult result = batch.encryptAll(List.of(
+ * 		new BatchEnigma.MessageRequest("I II III", "B", "AB CD", "AAA", "HELLO"),
+ * 		new BatchEnigma.MessageRequest("V I IV", "C", "", "QEV", "WORLD")));
+ * System.out.println(result.getResults() + " " + result);
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class BatchEnigma {
+
+	/**
+	 * The default number of messages processed by a single task.
+	 */
+	public static final int DEFAULT_GROUP_SIZE = 64;
+
+	/**
+	 * One message and its key.
+	 */
+	public static final class MessageRequest {
+
+		private final String rotors;
+		private final String reflector;
+		private final String plugboard;
+		private final String positions;
+		private final String text;
+
+		/**
+		 * Creates a message request.
+		 *
+		 * @param rotors    the rotors, for {@link EnigmaMachine#setRotors(String)}
+		 * @param reflector the reflector, for
+		 *                  {@link EnigmaMachine#setReflector(String)}
+		 * @param plugboard the plugboard pairs, for
+		 *                  {@link EnigmaMachine#setPlugboard(String)}, blank for
+		 *                  none
+		 * @param positions the start positions, for
+		 *                  {@link EnigmaMachine#setInitialPositions(String)}
+		 * @param text      the message, letters A to Z
+		 */
+		public MessageRequest(String rotors, String reflector, String plugboard, String positions, String text) {
+			this.rotors = Objects.requireNonNull(rotors, "rotors");
+			this.reflector = Objects.requireNonNull(reflector, "reflector");
+			this.plugboard = Objects.requireNonNull(plugboard, "plugboard");
+			this.positions = Objects.requireNonNull(positions, "positions");
+			this.text = Objects.requireNonNull(text, "text");
+		}
+
+		/**
+		 * Gets the plugboard pairs.
+		 *
+		 * @return the plugboard pairs
+		 */
+		public String getPlugboard() {
+			return plugboard;
+		}
+
+		/**
+		 * Gets the start positions.
+		 *
+		 * @return the start positions
+		 */
+		public String getPositions() {
+			return positions;
+		}
+
+		/**
+		 * Gets the reflector.
+		 *
+		 * @return the reflector
+		 */
+		public String getReflector() {
+			return reflector;
+		}
+
+		/**
+		 * Gets the rotors.
+		 *
+		 * @return the rotors
+		 */
+		public String getRotors() {
+			return rotors;
+		}
+
+		/**
+		 * Gets the message.
+		 *
+		 * @return the message
+		 */
+		public String getText() {
+			return text;
+		}
+	}
+
+	/**
+	 * The results of a batch and its latency statistics. Latencies are measured
+	 * per message, from key setup to the result string, and exclude the time the
+	 * message waited for an executor thread.
+	 */
+	public static final class BatchResult {
+
+		private final List<String> results;
+		private final long elapsedNanos;
+		private final long[] latencies;
+
+		BatchResult(List<String> results, long elapsedNanos, long[] latencies) {
+			this.results = results;
+			this.elapsedNanos = elapsedNanos;
+			this.latencies = latencies;
+
+			Arrays.sort(latencies);
+		}
+
+		/**
+		 * Gets the wall clock time of the whole batch.
+		 *
+		 * @return the batch time in nanoseconds
+		 */
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/**
+		 * Gets the longest message latency.
+		 *
+		 * @return the latency in nanoseconds, 0 for an empty batch
+		 */
+		public long getMaxNanos() {
+			return latencies.length == 0 ? 0 : latencies[latencies.length - 1];
+		}
+
+		/**
+		 * Gets the mean message latency.
+		 *
+		 * @return the latency in nanoseconds, 0 for an empty batch
+		 */
+		public double getMeanNanos() {
+			return latencies.length == 0 ? 0 : (double) Arrays.stream(latencies).sum() / latencies.length;
+		}
+
+		/**
+		 * Gets the shortest message latency.
+		 *
+		 * @return the latency in nanoseconds, 0 for an empty batch
+		 */
+		public long getMinNanos() {
+			return latencies.length == 0 ? 0 : latencies[0];
+		}
+
+		/**
+		 * Gets a percentile of the message latencies.
+		 *
+		 * @param percentile the percentile, 0 to 100
+		 * @return the latency in nanoseconds, 0 for an empty batch
+		 */
+		public long getPercentileNanos(double percentile) {
+			if (percentile < 0 || percentile > 100)
+				throw new IllegalArgumentException("percentile must be between 0 and 100 " + percentile);
+			if (latencies.length == 0)
+				return 0;
+
+			int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+
+			return latencies[Math.max(0, index)];
+		}
+
+		/**
+		 * Gets the processed messages, in the order of the requests.
+		 *
+		 * @return the results
+		 */
+		public List<String> getResults() {
+			return results;
+		}
+
+		/**
+		 * Gets the batch throughput.
+		 *
+		 * @return messages per second
+		 */
+		public double getThroughput() {
+			return elapsedNanos == 0 ? 0 : results.size() * 1e9 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("BatchResult [messages=%d, elapsed=%.3f ms, %.0f msgs/s, "
+					+ "latency min=%d mean=%.0f p50=%d p99=%d max=%d ns]",
+					results.size(),
+					elapsedNanos / 1e6,
+					getThroughput(),
+					getMinNanos(),
+					getMeanNanos(),
+					getPercentileNanos(50),
+					getPercentileNanos(99),
+					getMaxNanos());
+		}
+	}
+
+	/**
+	 * The machine, scratch buffer and last key of one executor thread.
+	 */
+	private static class Worker {
+
+		private final EnigmaMachine machine = new EnigmaMachine();
+		private char[] scratch = new char[256];
+
+		private String rotors = "";
+		private String reflector = "";
+		private String plugboard = "";
+
+		/**
+		 * Sets up the machine for a request's key and processes its message.
+		 *
+		 * @param request the request
+		 * @return the processed message
+		 */
+		String process(MessageRequest request) {
+			if (!request.rotors.equals(rotors)) {
+				machine.setRotors(request.rotors);
+				rotors = request.rotors;
+			}
+
+			if (!request.reflector.equals(reflector)) {
+				machine.setReflector(request.reflector);
+				reflector = request.reflector;
+			}
+
+			if (!request.plugboard.equals(plugboard)) {
+				machine.setPlugboard(request.plugboard);
+				plugboard = request.plugboard;
+			}
+
+			machine.setInitialPositions(request.positions);
+
+			final String text = request.text;
+			final int len = text.length();
+			if (scratch.length < len)
+				scratch = new char[Math.max(len, scratch.length * 2)];
+
+			text.getChars(0, len, scratch, 0);
+			final int out = machine.encrypt(scratch, 0, len);
+
+			return new String(scratch, 0, out);
+		}
+	}
+
+	private static final ThreadLocal<Worker> WORKERS = ThreadLocal.withInitial(Worker::new);
+
+	private final Executor executor;
+	private final int groupSize;
+
+	/**
+	 * Creates a batch engine running on the common pool.
+	 */
+	public BatchEnigma() {
+		this(ForkJoinPool.commonPool(), DEFAULT_GROUP_SIZE);
+	}
+
+	/**
+	 * Creates a batch engine.
+	 *
+	 * @param executor  the executor running the message groups
+	 * @param groupSize the number of messages processed by a single task
+	 */
+	public BatchEnigma(Executor executor, int groupSize) {
+		if (groupSize <= 0)
+			throw new IllegalArgumentException("group size must be positive " + groupSize);
+
+		this.executor = Objects.requireNonNull(executor, "executor");
+		this.groupSize = groupSize;
+	}
+
+	/**
+	 * Encrypts a batch of messages, waiting for all of them.
+	 *
+	 * @param requests the messages and their keys
+	 * @return the results in the order of the requests, and the batch statistics
+	 * @throws IllegalArgumentException if a key is invalid
+	 */
+	public BatchResult encryptAll(Collection<MessageRequest> requests) {
+		try {
+			return encryptAllAsync(requests).join();
+
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Encrypts a batch of messages asynchronously.
+	 *
+	 * @param requests the messages and their keys
+	 * @return a future completed with the results in the order of the requests,
+	 *         and the batch statistics, or exceptionally if a key is invalid
+	 */
+	public CompletableFuture<BatchResult> encryptAllAsync(Collection<MessageRequest> requests) {
+		final long start = System.nanoTime();
+
+		final MessageRequest[] messages = requests.toArray(new MessageRequest[0]);
+		final String[] results = new String[messages.length];
+		final long[] latencies = new long[messages.length];
+
+		List<CompletableFuture<Void>> groups = new ArrayList<>();
+		for (int from = 0; from < messages.length; from += groupSize) {
+			final int first = from;
+			final int last = Math.min(from + groupSize, messages.length);
+
+			groups.add(CompletableFuture.runAsync(() -> {
+				final Worker worker = WORKERS.get();
+
+				for (int i = first; i < last; i++) {
+					final long t0 = System.nanoTime();
+					results[i] = worker.process(messages[i]);
+					latencies[i] = System.nanoTime() - t0;
+				}
+			}, executor));
+		}
+
+		return CompletableFuture.allOf(groups.toArray(new CompletableFuture<?>[0]))
+				.thenApply(v -> new BatchResult(
+						Collections.unmodifiableList(Arrays.asList(results)),
+						System.nanoTime() - start,
+						latencies));
+	}
+}
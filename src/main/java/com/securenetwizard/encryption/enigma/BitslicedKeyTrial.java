@@ -0,0 +1,411 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.util.Objects;
+
+/**
+ * Bitsliced key trial kernel, which decrypts one cypher text under 64 rotor
+ * start positions at once and scores each decryption by its index of
+ * coincidence. The plugboard is left empty, as in the first stage of the
+ * {@link CiphertextOnlyAttack}.
+ *
+ * <p>
+ * Every letter in the machine is held as 5 bit planes, one {@code long} per
+ * bit, where bit {@code lane} of plane {@code j} is bit {@code j} of that
+ * lane's letter. The whole scrambler then runs as a boolean network on 64
+ * lanes at a time:
+ * </p>
+ * <ul>
+ * <li>The dials step with bitsliced increments, masked by bitsliced notch
+ * comparisons.</li>
+ * <li>Adding a dial on entry to a rotor and subtracting it on exit are 5-bit
+ * ripple-carry adders, corrected back into 0 to 25.</li>
+ * <li>A rotor or reflector wiring is a 5-in, 5-out boolean function: the
+ * input planes are decoded into the 26 letter minterms, and each output plane
+ * is the OR of the minterms whose wired letter has that bit set.</li>
+ * <li>The decrypted letter of each lane is counted in 26 vertical counters,
+ * one bit plane per counter bit, from which the index of coincidence of every
+ * lane is read once the whole text has been processed.</li>
+ * </ul>
+ *
+ * <p>
+ * Instances hold scratch planes and are used by one thread at a time.
+ * </p>
+ *
+ * <pre>
+ * BitslicedKeyTrial trial = new BitslicedKeyTrial(cypherText, new int[] { 1, 3, 0 }, Reflector.REFLECTOR_B);
+ * double[] scores = new double[BitslicedKeyTrial.LANES];
+ * for (int first = 0; first &lt; CompiledEnigma.POSITIONS; first += BitslicedKeyTrial.LANES)
+ * 	trial.score(first, scores);
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class BitslicedKeyTrial {
+
+	/**
+	 * The number of start positions tried at once.
+	 */
+	public static final int LANES = Long.SIZE;
+
+	private static final int N = Rotor.ROTOR_POSITIONS;
+
+	/** Bits per letter */
+	private static final int BITS = 5;
+
+	/**
+	 * Adds a constant to the lanes of a mask, modulo 32.
+	 *
+	 * @param a        the planes, modified in place
+	 * @param constant the constant
+	 * @param mask     the lanes to add to
+	 */
+	private static void addConstant(long[] a, int constant, long mask) {
+		long carry = 0;
+		for (int j = 0; j < BITS; j++) {
+			final long b = ((constant >>> j) & 1) != 0 ? mask : 0;
+			final long sum = a[j] ^ b ^ carry;
+
+			carry = (a[j] & b) | (carry & (a[j] ^ b));
+			a[j] = sum;
+		}
+	}
+
+	/**
+	 * Adds two letters modulo 26 in every lane.
+	 *
+	 * @param a the first letters, replaced by the sums
+	 * @param b the second letters
+	 */
+	private static void addMod26(long[] a, long[] b) {
+		long carry = 0;
+		for (int j = 0; j < BITS; j++) {
+			final long sum = a[j] ^ b[j] ^ carry;
+
+			carry = (a[j] & b[j]) | (carry & (a[j] ^ b[j]));
+			a[j] = sum;
+		}
+
+		/* Sums of 26 to 50, 11010 and up, wrap by subtracting 26, adding 6 mod 32 */
+		final long wrap = carry | (a[4] & a[3] & (a[2] | a[1]));
+		addConstant(a, 32 - N, wrap);
+	}
+
+	/**
+	 * Compares the letters of every lane to a constant.
+	 *
+	 * @param a        the letters
+	 * @param constant the constant
+	 * @return the lanes equal to the constant
+	 */
+	private static long equal(long[] a, int constant) {
+		long eq = ~0L;
+		for (int j = 0; j < BITS; j++)
+			eq &= ((constant >>> j) & 1) != 0 ? a[j] : ~a[j];
+
+		return eq;
+	}
+
+	/**
+	 * Advances the dials of the lanes of a mask, from Z back to A.
+	 *
+	 * @param dial the dials, modified in place
+	 * @param mask the lanes to advance
+	 */
+	private static void increment(long[] dial, long mask) {
+		long carry = mask;
+		for (int j = 0; j < BITS; j++) {
+			final long next = dial[j] & carry;
+
+			dial[j] ^= carry;
+			carry = next;
+		}
+
+		final long wrap = equal(dial, N);
+		for (int j = 0; j < BITS; j++)
+			dial[j] &= ~wrap;
+	}
+
+	/**
+	 * Converts a cypher text into letter indexes.
+	 *
+	 * @param cypherText the cypher text, letters A to Z
+	 * @return the letter indexes
+	 */
+	private static byte[] letters(String cypherText) {
+		final byte[] cypher = new byte[cypherText.length()];
+		for (int i = 0; i < cypher.length; i++) {
+			final char ch = cypherText.charAt(i);
+			if (ch < 'A' || ch > 'Z')
+				throw new IllegalArgumentException("expected letters A to Z, found '" + ch + "'");
+
+			cypher[i] = (byte) (ch - 'A');
+		}
+
+		return cypher;
+	}
+
+	/**
+	 * Converts a wiring table into one input letter mask per output bit.
+	 *
+	 * @param wiring the wiring, 26 letters
+	 * @return for each output bit, the input letters whose wired letter has the
+	 *         bit set
+	 */
+	private static int[] outputMasks(int[] wiring) {
+		final int[] masks = new int[BITS];
+		for (int k = 0; k < N; k++)
+			for (int j = 0; j < BITS; j++)
+				if (((wiring[k] >>> j) & 1) != 0)
+					masks[j] |= 1 << k;
+
+		return masks;
+	}
+
+	/**
+	 * Sets the value of one lane.
+	 *
+	 * @param planes the bit planes
+	 * @param lane   the lane
+	 * @param value  the lane's value
+	 */
+	private static void setLane(long[] planes, int lane, int value) {
+		for (int j = 0; j < BITS; j++)
+			if (((value >>> j) & 1) != 0)
+				planes[j] |= 1L << lane;
+	}
+
+	/**
+	 * Subtracts letters modulo 26 in every lane.
+	 *
+	 * @param a the first letters, replaced by the differences
+	 * @param b the letters to subtract
+	 */
+	private static void subMod26(long[] a, long[] b) {
+		long carry = ~0L;
+		for (int j = 0; j < BITS; j++) {
+			final long nb = ~b[j];
+			final long sum = a[j] ^ nb ^ carry;
+
+			carry = (a[j] & nb) | (carry & (a[j] ^ nb));
+			a[j] = sum;
+		}
+
+		/* No carry out means a negative difference, which wraps by adding 26 */
+		addConstant(a, N, ~carry);
+	}
+
+	private final byte[] cypher;
+	private final int[][] forward = new int[3][];
+	private final int[][] reverse = new int[3][];
+	private final int[] reflect;
+	private final int notch1;
+	private final int notch2;
+
+	private final long[] dial1 = new long[BITS];
+	private final long[] dial2 = new long[BITS];
+	private final long[] dial3 = new long[BITS];
+	private final long[] letter = new long[BITS];
+	private final long[] minterms = new long[1 << BITS];
+
+	/** Vertical letter counters, [letter][counter bit] */
+	private final long[][] counters;
+	private final int[] counts = new int[N];
+
+	/**
+	 * Creates a kernel for a cypher text and a rotor order.
+	 *
+	 * @param cypherText the cypher text, letters A to Z
+	 * @param rotors     the rotor numbers, see {@link EnigmaMachine#setRotors(int...)}
+	 * @param reflector  the reflector index, see {@link Reflector#REFLECTORS}
+	 * @throws IllegalArgumentException if the cypher text contains other
+	 *                                  characters
+	 */
+	public BitslicedKeyTrial(String cypherText, int[] rotors, int reflector) {
+		this(letters(cypherText), rotors, reflector);
+	}
+
+	/**
+	 * Creates a kernel for a cypher text given as letter indexes.
+	 *
+	 * @param cypher    the cypher text, 0 for A to 25 for Z, not copied
+	 * @param rotors    the rotor numbers
+	 * @param reflector the reflector index
+	 */
+	BitslicedKeyTrial(byte[] cypher, int[] rotors, int reflector) {
+		if (rotors.length != 3)
+			throw new IllegalArgumentException("expected 3 rotor numbers");
+
+		this.cypher = cypher;
+
+		for (int i = 0; i < 3; i++) {
+			final int[] wiring = Rotor.ROTORS[Objects.checkIndex(rotors[i], Rotor.ROTORS.length)];
+			final int[] inverse = new int[N];
+			for (int k = 0; k < N; k++)
+				inverse[wiring[k]] = k;
+
+			forward[i] = outputMasks(wiring);
+			reverse[i] = outputMasks(inverse);
+		}
+
+		this.reflect = outputMasks(Reflector.REFLECTORS[Objects.checkIndex(reflector, Reflector.REFLECTORS.length)]);
+		this.notch1 = Rotor.ROTOR_NOTCHES[rotors[0]];
+		this.notch2 = Rotor.ROTOR_NOTCHES[rotors[1]];
+
+		this.counters = new long[N][Integer.SIZE - Integer.numberOfLeadingZeros(cypher.length)];
+	}
+
+	/**
+	 * Decodes the current letter planes into one lane mask per letter.
+	 */
+	private void decode() {
+		minterms[0] = ~letter[0];
+		minterms[1] = letter[0];
+
+		for (int j = 1, size = 2; j < BITS; j++, size <<= 1) {
+			for (int k = 0; k < size; k++) {
+				final long m = minterms[k];
+
+				minterms[k + size] = m & letter[j];
+				minterms[k] = m & ~letter[j];
+			}
+		}
+	}
+
+	/**
+	 * Passes the current letter of every lane through a wiring.
+	 *
+	 * @param masks the wiring's output masks
+	 */
+	private void lookup(int[] masks) {
+		decode();
+
+		for (int j = 0; j < BITS; j++) {
+			long out = 0;
+			for (int m = masks[j]; m != 0; m &= m - 1)
+				out |= minterms[Integer.numberOfTrailingZeros(m)];
+
+			letter[j] = out;
+		}
+	}
+
+	/**
+	 * Passes the current letter of every lane through a rotor at each lane's
+	 * dial.
+	 *
+	 * @param masks the rotor's output masks, forward or reverse
+	 * @param dial  the dial planes
+	 */
+	private void rotor(int[] masks, long[] dial) {
+		addMod26(letter, dial);
+		lookup(masks);
+		subMod26(letter, dial);
+	}
+
+	/**
+	 * Decrypts the cypher text from 64 consecutive start positions and scores
+	 * each decryption.
+	 *
+	 * @param firstPosition the position index of lane 0, see
+	 *                      {@link CompiledEnigma#positionIndex(int, int, int)};
+	 *                      lane {@code i} starts at {@code firstPosition + i},
+	 *                      wrapping past the last position
+	 * @param scores        receives the index of coincidence of each lane, at
+	 *                      least {@link #LANES} entries
+	 */
+	public void score(int firstPosition, double[] scores) {
+		Objects.checkIndex(firstPosition, CompiledEnigma.POSITIONS);
+		Objects.checkFromIndexSize(0, LANES, scores.length);
+
+		for (int j = 0; j < BITS; j++)
+			dial1[j] = dial2[j] = dial3[j] = 0;
+		for (long[] counter : counters)
+			for (int b = 0; b < counter.length; b++)
+				counter[b] = 0;
+
+		for (int lane = 0; lane < LANES; lane++) {
+			final int position = (firstPosition + lane) % CompiledEnigma.POSITIONS;
+			setLane(dial1, lane, position % N);
+			setLane(dial2, lane, (position / N) % N);
+			setLane(dial3, lane, position / (N * N));
+		}
+
+		for (int i = 0; i < cypher.length; i++) {
+			step();
+
+			for (int j = 0; j < BITS; j++)
+				letter[j] = ((cypher[i] >>> j) & 1) != 0 ? ~0L : 0L;
+
+			rotor(forward[0], dial1);
+			rotor(forward[1], dial2);
+			rotor(forward[2], dial3);
+			lookup(reflect);
+			rotor(reverse[2], dial3);
+			rotor(reverse[1], dial2);
+			rotor(reverse[0], dial1);
+
+			decode();
+			for (int k = 0; k < N; k++) {
+				final long[] counter = counters[k];
+
+				long carry = minterms[k];
+				for (int b = 0; carry != 0; b++) {
+					final long next = counter[b] & carry;
+
+					counter[b] ^= carry;
+					carry = next;
+				}
+			}
+		}
+
+		for (int lane = 0; lane < LANES; lane++) {
+			for (int k = 0; k < N; k++) {
+				final long[] counter = counters[k];
+
+				int count = 0;
+				for (int b = 0; b < counter.length; b++)
+					count |= (int) ((counter[b] >>> lane) & 1) << b;
+
+				counts[k] = count;
+			}
+
+			scores[lane] = TextScorer.indexOfCoincidence(counts, cypher.length);
+		}
+	}
+
+	/**
+	 * Steps the dials of every lane before a key press, see
+	 * {@link RotorStepping}.
+	 */
+	private void step() {
+		final long atNotch1 = equal(dial1, notch1);
+		final long atNotch2 = equal(dial2, notch2);
+
+		increment(dial1, ~0L);
+		increment(dial2, atNotch1 | atNotch2);
+		increment(dial3, atNotch2);
+	}
+}
@@ -0,0 +1,569 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turing-Welchman bombe simulator for known-plaintext key recovery. Given a
+ * cypher text and a crib, the clear text known to be at some offset of the
+ * message, the bombe recovers the rotor order, reflector, rotor start
+ * positions and plugboard pairs.
+ *
+ * <p>
+ * Each crib letter and the cypher letter under it are linked in the menu by
+ * the unsteckered scrambler (rotors and reflector) at that message offset: if
+ * the crib letter is steckered to {@code y}, the cypher letter is steckered to
+ * {@code scrambler(y)}. For every rotor order, reflector and start position the
+ * bombe assumes the most connected menu letter is steckered to some letter and
+ * propagates the consequences. The hypotheses are kept as one 26-bit mask per
+ * letter, and the diagonal board adds the symmetric hypothesis {@code y -> a}
+ * for each {@code a -> y}. A position is dismissed when all 26 hypotheses for
+ * the test letter light up. Otherwise each remaining hypothesis that closes
+ * without any contradiction is a stop, which the plugboard completion stage
+ * turns into a full key and verifies against the crib.
+ * </p>
+ *
+ * <p>
+ * The 60 orders of the 5 rotors in {@link Rotor#ROTORS} and both reflectors in
+ * {@link Reflector#REFLECTORS} are tested in parallel, one task per rotor order
+ * and reflector, on a {@link ForkJoinPool}. The scrambler tables are compiled
+ * for each task, or read from a shared off-heap store when one is set with
+ * {@link #setScramblerTables(ScramblerTables)}.
+ * </p>
+ *
+ * <pre>
+ * Bombe bombe = new Bombe(cypherText, "WETTERVORHERSAGE", 0);
+ * List&lt;Bombe.Stop&gt; stops = bombe.run(ForkJoinPool.commonPool(), new Bombe.Listener() {
+ * 	public void onStop(Bombe.Stop stop) {
+ * 		System.out.println(stop);
+ * 	}
+ * });
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class Bombe {
+
+	/**
+	 * Receives the bombe's progress and stops. Methods are called from the worker
+	 * threads, possibly concurrently.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called each time all positions of one rotor order and reflector have been
+		 * tested.
+		 *
+		 * @param completed the number of rotor order and reflector combinations
+		 *                  tested so far
+		 * @param total     the total number of combinations
+		 */
+		default void onProgress(int completed, int total) {
+		}
+
+		/**
+		 * Called for each verified stop as soon as it is found.
+		 *
+		 * @param stop the stop
+		 */
+		void onStop(Stop stop);
+	}
+
+	/**
+	 * A verified bombe stop: a complete key that decrypts the crib.
+	 */
+	public static final class Stop {
+
+		private final int[] rotors;
+		private final int reflector;
+		private final int[] positions;
+		private final String plugboard;
+
+		Stop(int[] rotors, int reflector, int[] positions, String plugboard) {
+			this.rotors = rotors;
+			this.reflector = reflector;
+			this.positions = positions;
+			this.plugboard = plugboard;
+		}
+
+		/**
+		 * Gets the plugboard pairs, for {@link EnigmaMachine#setPlugboard(String)}.
+		 *
+		 * @return the plugboard pairs, empty if no letters are steckered
+		 */
+		public String getPlugboard() {
+			return plugboard;
+		}
+
+		/**
+		 * Gets the rotor start positions at the beginning of the message, for
+		 * {@link EnigmaMachine#setInitialPositions(int...)}.
+		 *
+		 * @return the rotor positions
+		 */
+		public int[] getPositions() {
+			return positions.clone();
+		}
+
+		/**
+		 * Gets the reflector index, see {@link Reflector#REFLECTORS}.
+		 *
+		 * @return the reflector index
+		 */
+		public int getReflector() {
+			return reflector;
+		}
+
+		/**
+		 * Gets the rotor numbers, for {@link EnigmaMachine#setRotors(int...)}.
+		 *
+		 * @return the rotor numbers
+		 */
+		public int[] getRotors() {
+			return rotors.clone();
+		}
+
+		/**
+		 * Creates a machine set up with this stop's key.
+		 *
+		 * @return a new machine at the start positions of the message
+		 */
+		public EnigmaMachine toMachine() {
+			EnigmaMachine machine = new EnigmaMachine();
+			machine.setRotors(rotors);
+			machine.setReflector(Reflector.REFLECTOR_NAMES[reflector]);
+			if (!plugboard.isEmpty())
+				machine.setPlugboard(plugboard);
+			machine.setInitialPositions(positions.clone());
+
+			return machine;
+		}
+
+		@Override
+		public String toString() {
+			return "Stop ["
+					+ "rotors=" + Rotor.ROTOR_NAMES[rotors[0]] + " " + Rotor.ROTOR_NAMES[rotors[1]] + " " + Rotor.ROTOR_NAMES[rotors[2]]
+					+ ", reflector=" + Reflector.REFLECTOR_NAMES[reflector]
+					+ ", positions=" + (char) ('A' + positions[0]) + (char) ('A' + positions[1])
+					+ (char) ('A' + positions[2])
+					+ ", plugboard=" + plugboard
+					+ "]";
+		}
+	}
+
+	/**
+	 * Tests all start positions of one rotor order and reflector.
+	 */
+	private class OrderTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] rotors;
+		private final int reflector;
+
+		OrderTask(int[] rotors, int reflector) {
+			this.rotors = rotors;
+			this.reflector = reflector;
+		}
+
+		@Override
+		protected void compute() {
+			testRotorOrder(rotors, reflector);
+
+			final int done = completed.incrementAndGet();
+			EnigmaMetrics.progress(Bombe.class, 1, done, total);
+			listener.onProgress(done, total);
+		}
+	}
+
+	private static final int N = Rotor.ROTOR_POSITIONS;
+	private static final int ALL_LETTERS = (1 << N) - 1;
+
+	/**
+	 * Lists every order of 3 distinct rotors out of the 5 available.
+	 *
+	 * @return the 60 rotor orders
+	 */
+	static List<int[]> rotorOrders() {
+		List<int[]> orders = new ArrayList<>();
+		for (int r1 = 0; r1 < Rotor.ROTORS.length; r1++)
+			for (int r2 = 0; r2 < Rotor.ROTORS.length; r2++)
+				for (int r3 = 0; r3 < Rotor.ROTORS.length; r3++)
+					if (r1 != r2 && r1 != r3 && r2 != r3)
+						orders.add(new int[] { r1, r2, r3 });
+
+		return orders;
+	}
+
+	private final String cypherText;
+	private final String crib;
+	private final int cribOffset;
+
+	/* Menu graph: edge i links crib letter edgeFrom[i] to a cypher letter at edgeOffset[i] */
+	private final int[] edgeFrom;
+	private final int[] edgeOffset;
+	/* Compressed adjacency: the edges of letter a are adjEdge[adjStart[a]..adjStart[a+1]) */
+	private final int[] adjStart = new int[N + 1];
+	private final int[] adjEdge;
+	private final int[] adjLetter;
+	private final int testLetter;
+
+	private final List<Stop> stops = Collections.synchronizedList(new ArrayList<>());
+	private final AtomicInteger completed = new AtomicInteger();
+	private volatile Listener listener;
+	private volatile ScramblerTables scramblerTables;
+	private int total;
+
+	/**
+	 * Builds the menu for a crib placed at an offset of the cypher text.
+	 *
+	 * @param cypherText the cypher text, letters A to Z
+	 * @param crib       the known clear text, letters A to Z
+	 * @param cribOffset the offset of the crib's first letter in the cypher text
+	 * @throws IllegalArgumentException if the crib does not fit the cypher text
+	 *                                  or a crib letter falls on the same cypher
+	 *                                  letter, which an Enigma never produces
+	 */
+	public Bombe(String cypherText, String crib, int cribOffset) {
+		this.cypherText = Objects.requireNonNull(cypherText, "cypherText");
+		this.crib = Objects.requireNonNull(crib, "crib");
+		this.cribOffset = cribOffset;
+
+		Objects.checkFromIndexSize(cribOffset, crib.length(), cypherText.length());
+		if (crib.isEmpty())
+			throw new IllegalArgumentException("empty crib");
+
+		final int edges = crib.length();
+		final int[] from = new int[edges];
+		final int[] to = new int[edges];
+		this.edgeFrom = from;
+		this.edgeOffset = new int[edges];
+
+		int[] degree = new int[N];
+		for (int i = 0; i < edges; i++) {
+			from[i] = letter(crib.charAt(i));
+			to[i] = letter(cypherText.charAt(cribOffset + i));
+			edgeOffset[i] = cribOffset + i;
+
+			if (from[i] == to[i])
+				throw new IllegalArgumentException("crib letter " + crib.charAt(i)
+						+ " enciphers to itself at offset " + (cribOffset + i));
+
+			degree[from[i]]++;
+			degree[to[i]]++;
+		}
+
+		for (int a = 0; a < N; a++)
+			adjStart[a + 1] = adjStart[a] + degree[a];
+
+		this.adjEdge = new int[adjStart[N]];
+		this.adjLetter = new int[adjStart[N]];
+		int[] fill = Arrays.copyOf(adjStart, N);
+		for (int i = 0; i < edges; i++) {
+			adjEdge[fill[from[i]]] = i;
+			adjLetter[fill[from[i]]++] = to[i];
+			adjEdge[fill[to[i]]] = i;
+			adjLetter[fill[to[i]]++] = from[i];
+		}
+
+		int best = 0;
+		for (int a = 1; a < N; a++)
+			if (degree[a] > degree[best])
+				best = a;
+		this.testLetter = best;
+	}
+
+	/**
+	 * Propagates a stecker hypothesis through the menu and the diagonal board.
+	 *
+	 * @param table    the unsteckered scrambler table of the rotor order
+	 * @param edgeBase the table offset of the scrambler at each menu edge
+	 * @param live     the hypotheses per letter, updated in place
+	 * @param stack    scratch work list of at least 26 * 26 entries
+	 * @param letter   the letter of the initial hypothesis
+	 * @param stecker  the letter it is assumed to be steckered to
+	 * @param strict   if true, stop and return -1 as soon as any letter has two
+	 *                 hypotheses
+	 * @return the hypotheses of the test letter, or -1 on a contradiction in
+	 *         strict mode
+	 */
+	private int closure(ByteBuffer table, int[] edgeBase, int[] live, int[] stack,
+			int letter, int stecker, boolean strict) {
+		int sp = 0;
+
+		if ((live[letter] & (1 << stecker)) == 0) {
+			if (strict && live[letter] != 0)
+				return -1;
+
+			live[letter] |= 1 << stecker;
+			stack[sp++] = letter * N + stecker;
+		}
+
+		while (sp > 0) {
+			final int entry = stack[--sp];
+			final int a = entry / N;
+			final int y = entry % N;
+
+			/* Diagonal board: a steckered to y implies y steckered to a */
+			if ((live[y] & (1 << a)) == 0) {
+				if (strict && live[y] != 0)
+					return -1;
+
+				live[y] |= 1 << a;
+				stack[sp++] = y * N + a;
+			}
+
+			for (int j = adjStart[a], end = adjStart[a + 1]; j < end; j++) {
+				final int b = adjLetter[j];
+				final int z = table.get(edgeBase[adjEdge[j]] + y);
+
+				if ((live[b] & (1 << z)) == 0) {
+					if (strict && live[b] != 0)
+						return -1;
+
+					live[b] |= 1 << z;
+					stack[sp++] = b * N + z;
+				}
+			}
+
+			if (live[testLetter] == ALL_LETTERS)
+				break;
+		}
+
+		return live[testLetter];
+	}
+
+	/**
+	 * Completes the plugboard from a contradiction-free closure and verifies the
+	 * resulting key against the crib. Menu letters the closure did not reach
+	 * belong to other parts of the menu graph; for each such part every stecker
+	 * of one of its letters is tried, and each contradiction-free extension is
+	 * explored in turn. Letters outside the menu are assumed unsteckered.
+	 *
+	 * @param rotors    the rotor order
+	 * @param reflector the reflector index
+	 * @param position  the start position index
+	 * @param table     the unsteckered scrambler table of the rotor order
+	 * @param edgeBase  the table offset of the scrambler at each menu edge
+	 * @param live      the closed hypotheses, at most one per letter
+	 * @return the verified stop, or null if no completion decrypts the crib
+	 */
+	private Stop completePlugboard(int[] rotors, int reflector, int position,
+			ByteBuffer table, int[] edgeBase, int[] live) {
+
+		for (int e = 0; e < edgeFrom.length; e++) {
+			final int letter = edgeFrom[e];
+			if (live[letter] != 0)
+				continue;
+
+			final int[] stack = new int[N * N];
+			for (int stecker = 0; stecker < N; stecker++) {
+				int[] trial = live.clone();
+				if (closure(table, edgeBase, trial, stack, letter, stecker, true) < 0)
+					continue;
+
+				Stop stop = completePlugboard(rotors, reflector, position, table, edgeBase, trial);
+				if (stop != null)
+					return stop;
+			}
+
+			return null;
+		}
+
+		StringBuilder pairs = new StringBuilder();
+		int count = 0;
+
+		for (int a = 0; a < N; a++) {
+			if (live[a] == 0)
+				continue; // Not in the menu, assumed unsteckered
+
+			final int y = Integer.numberOfTrailingZeros(live[a]);
+			if (y > a) {
+				if (count++ > 0)
+					pairs.append(' ');
+				pairs.append((char) ('A' + a)).append((char) ('A' + y));
+			}
+		}
+
+		if (count > Plugboard.SWITCH_MAX_ENTRIES)
+			return null;
+
+		Stop stop = new Stop(rotors.clone(), reflector,
+				new int[] { position % N, (position / N) % N, position / (N * N) },
+				pairs.toString());
+
+		EnigmaMachine machine = stop.toMachine();
+		machine.seek(cribOffset);
+		String clear = machine.decrypt(cypherText.substring(cribOffset, cribOffset + crib.length()));
+
+		return clear.equals(crib) ? stop : null;
+	}
+
+	/**
+	 * Gets the shared store of scrambler tables.
+	 *
+	 * @return the store, or null if the tables are compiled for each task
+	 */
+	public ScramblerTables getScramblerTables() {
+		return scramblerTables;
+	}
+
+	/**
+	 * Converts an upper case letter into its 0-based index.
+	 *
+	 * @param ch the letter
+	 * @return the letter index
+	 */
+	private static int letter(char ch) {
+		if (ch < 'A' || ch > 'Z')
+			throw new IllegalArgumentException("expected letters A to Z, found '" + ch + "'");
+
+		return ch - 'A';
+	}
+
+	/**
+	 * Runs the bombe over all rotor orders and reflectors on the common pool.
+	 *
+	 * @return the verified stops
+	 */
+	public List<Stop> run() {
+		return run(ForkJoinPool.commonPool(), stop -> {});
+	}
+
+	/**
+	 * Runs the bombe over all rotor orders and reflectors, reporting progress and
+	 * stops to the listener as they are found.
+	 *
+	 * @param pool     the pool running one task per rotor order and reflector
+	 * @param listener receives progress and stops from the worker threads
+	 * @return the verified stops
+	 */
+	public synchronized List<Stop> run(ForkJoinPool pool, Listener listener) {
+		this.listener = Objects.requireNonNull(listener, "listener");
+		this.stops.clear();
+		this.completed.set(0);
+
+		List<OrderTask> tasks = new ArrayList<>();
+		for (int[] rotors : rotorOrders())
+			for (int reflector = 0; reflector < Reflector.REFLECTORS.length; reflector++)
+				tasks.add(new OrderTask(rotors, reflector));
+
+		this.total = tasks.size();
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				ForkJoinTask.invokeAll(tasks);
+			}
+		});
+
+		synchronized (stops) {
+			return new ArrayList<>(stops);
+		}
+	}
+
+	/**
+	 * Gets the unsteckered scrambler table of a rotor order and reflector from
+	 * the shared store, or builds it when no store is set.
+	 *
+	 * @param rotors    the rotor order
+	 * @param reflector the reflector index
+	 * @return the permutation table of every rotor position
+	 */
+	private ByteBuffer scramblerTable(int[] rotors, int reflector) {
+		final ScramblerTables tables = scramblerTables;
+		if (tables != null)
+			return tables.table(rotors, reflector);
+
+		return ByteBuffer.wrap(ScramblerTables.compile(rotors, reflector));
+	}
+
+	/**
+	 * Sets a shared store of scrambler tables, read instead of compiling the
+	 * tables of each rotor order for every task.
+	 *
+	 * @param scramblerTables the store, or null to compile the tables
+	 */
+	public void setScramblerTables(ScramblerTables scramblerTables) {
+		this.scramblerTables = scramblerTables;
+	}
+
+	/**
+	 * Tests every start position of one rotor order and reflector.
+	 *
+	 * @param rotors    the rotor order
+	 * @param reflector the reflector index
+	 */
+	private void testRotorOrder(int[] rotors, int reflector) {
+		final ByteBuffer table = scramblerTable(rotors, reflector);
+		final int notch1 = Rotor.ROTOR_NOTCHES[rotors[0]];
+		final int notch2 = Rotor.ROTOR_NOTCHES[rotors[1]];
+
+		final int[] edgeBase = new int[edgeOffset.length];
+		final int[] live = new int[N];
+		final int[] stack = new int[N * N];
+
+		for (int position = 0; position < CompiledEnigma.POSITIONS; position++) {
+			final int d1 = position % N;
+			final int d2 = (position / N) % N;
+			final int d3 = position / (N * N);
+
+			/* Rotors step before each letter, so edge k sees the state after k + 1 presses */
+			for (int e = 0; e < edgeOffset.length; e++)
+				edgeBase[e] = RotorStepping.seek(notch1, notch2, d1, d2, d3, edgeOffset[e] + 1L) * N;
+
+			Arrays.fill(live, 0);
+			final int lit = closure(table, edgeBase, live, stack, testLetter, 0, false);
+			if (lit == ALL_LETTERS)
+				continue;
+
+			for (int stecker = 0; stecker < N; stecker++) {
+				if (stecker != 0 && (lit & (1 << stecker)) != 0)
+					continue; // Same hypothesis class as 0, which is not contradiction-free
+
+				Arrays.fill(live, 0);
+				if (closure(table, edgeBase, live, stack, testLetter, stecker, true) < 0)
+					continue;
+
+				Stop stop = completePlugboard(rotors, reflector, position, table, edgeBase, live);
+				if (stop != null) {
+					stops.add(stop);
+					listener.onStop(stop);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,599 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Bulk encryption and decryption of many files under one key, in a single
+ * JVM. Inputs are files, directories, which are walked recursively, or glob
+ * patterns such as {@code logs/**.txt}. Each input file is written to the
+ * output directory under its path relative to the input.
+ *
+ * <p>
+ * A file is either one message, or with {@code lines} one message per line, as
+ * in a message log. Every message starts at the initial positions. Clear text
+ * is escaped before encryption and unescaped after decryption, see
+ * {@link EscapeCodec}, so it may hold letters, digits, spaces and the escaped
+ * punctuation, and comes back in upper case. In a whole file, line breaks are
+ * kept as they are and do not step the rotors. A file holding any other
+ * character fails rather than being enciphered wrongly. Whole files are
+ * streamed in chunks of {@value #BUFFER_SIZE} bytes, and lines are read one at
+ * a time, so the memory used is bounded by the number of threads and the
+ * longest line, whatever the size of the inputs.
+ * </p>
+ *
+ * <p>
+ * Files are processed in parallel on a fixed pool of threads, all sharing one
+ * compiled key. A file that fails is reported, its partial output is deleted
+ * and the other files carry on.
+ * </p>
+ *
+ * <pre>
+ * encrypt|decrypt --key &lt;sheet&gt; --output &lt;dir&gt; [--day 31] [--positions QEV]
+ *     [--lines] [--threads 8] &lt;input&gt;...
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class BulkEnigma {
+
+	/**
+	 * The size of the chunks a whole file is streamed in.
+	 */
+	public static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The totals of a bulk run.
+	 */
+	public static final class Report {
+
+		private final long files;
+		private final long messages;
+		private final long bytes;
+		private final List<String> failures;
+		private final long elapsedNanos;
+
+		Report(long files, long messages, long bytes, List<String> failures, long elapsedNanos) {
+			this.files = files;
+			this.messages = messages;
+			this.bytes = bytes;
+			this.failures = failures;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * Gets the number of input bytes processed.
+		 *
+		 * @return the bytes
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * Gets the wall clock time of the run.
+		 *
+		 * @return the elapsed time in nanoseconds
+		 */
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/**
+		 * Gets a description of each file that failed.
+		 *
+		 * @return the failures, empty if every file was processed
+		 */
+		public List<String> getFailures() {
+			return failures;
+		}
+
+		/**
+		 * Gets the number of files processed.
+		 *
+		 * @return the files
+		 */
+		public long getFiles() {
+			return files;
+		}
+
+		/**
+		 * Gets the input throughput.
+		 *
+		 * @return megabytes (10^6 bytes) per second
+		 */
+		public double getMegabytesPerSecond() {
+			return elapsedNanos == 0 ? 0 : bytes * 1e3 / elapsedNanos;
+		}
+
+		/**
+		 * Gets the number of messages processed, files or lines.
+		 *
+		 * @return the messages
+		 */
+		public long getMessages() {
+			return messages;
+		}
+
+		/**
+		 * Gets the message throughput.
+		 *
+		 * @return messages per second
+		 */
+		public double getMessagesPerSecond() {
+			return elapsedNanos == 0 ? 0 : messages * 1e9 / elapsedNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d files, %d messages, %d bytes in %.1f ms (%.1f MB/s, %.0f msgs/s), %d failed",
+					files,
+					messages,
+					bytes,
+					elapsedNanos / 1e6,
+					getMegabytesPerSecond(),
+					getMessagesPerSecond(),
+					failures.size());
+		}
+	}
+
+	/**
+	 * One input file and the path of its output, relative to the output
+	 * directory.
+	 */
+	private static final class Job {
+
+		private final Path source;
+		private final Path relative;
+
+		Job(Path source, Path relative) {
+			this.source = source;
+			this.relative = relative;
+		}
+	}
+
+	/**
+	 * Encrypts or decrypts the letter runs of a buffer in place. Line breaks are
+	 * skipped without stepping the rotors.
+	 *
+	 * @throws IllegalArgumentException at any other character
+	 */
+	private static void applyLetters(CompiledEnigma cursor, byte[] buf, int len) {
+		int run = 0;
+		for (int i = 0; i < len; i++) {
+			final int ch = buf[i] & 0xFF;
+			if (ch >= 'A' && ch <= 'Z')
+				continue;
+
+			if (ch != '\n' && ch != '\r')
+				throw new IllegalArgumentException(String.format("character 0x%02X can not be enciphered", ch));
+
+			cursor.encrypt(buf, run, i - run);
+			run = i + 1;
+		}
+
+		cursor.encrypt(buf, run, len - run);
+	}
+
+	/**
+	 * Expands one input argument into its files. A glob is split at its first
+	 * name holding a wildcard, the directory before it is walked and every file
+	 * is matched against the whole pattern.
+	 *
+	 * @param input a file, directory or glob
+	 * @return the files with their paths relative to the input
+	 * @throws IOException if a directory can not be walked
+	 */
+	static List<Job> expand(String input) throws IOException {
+		if (input.indexOf('*') < 0 && input.indexOf('?') < 0 && input.indexOf('[') < 0 && input.indexOf('{') < 0) {
+			final Path path = Paths.get(input);
+			if (Files.isDirectory(path))
+				return walk(path, p -> true);
+
+			if (!Files.isRegularFile(path))
+				throw new IllegalArgumentException("no such file " + input);
+
+			return List.of(new Job(path, path.getFileName()));
+		}
+
+		final Path pattern = Paths.get(input);
+		Path prefix = (pattern.getRoot() == null) ? Paths.get("") : pattern.getRoot();
+		for (Path name : pattern) {
+			final String s = name.toString();
+			if (s.indexOf('*') >= 0 || s.indexOf('?') >= 0 || s.indexOf('[') >= 0 || s.indexOf('{') >= 0)
+				break;
+
+			prefix = prefix.resolve(name);
+		}
+
+		final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+		final Path base = prefix;
+		final Path walked = base.toString().isEmpty() ? Paths.get(".") : base;
+		if (!Files.isDirectory(walked))
+			throw new IllegalArgumentException("no such directory " + walked);
+
+		return walk(walked, p -> matcher.matches(base.resolve(walked.relativize(p))));
+	}
+
+	/**
+	 * Runs a bulk encryption or decryption from the command line and prints the
+	 * report. The exit status is 1 if any file failed.
+	 *
+	 * <pre>
+	 * encrypt|decrypt --key &lt;sheet&gt; --output &lt;dir&gt; [--day 31] [--positions QEV]
+	 *     [--lines] [--threads 8] &lt;input&gt;...
+	 * </pre>
+	 *
+	 * @param args command line arguments
+	 * @throws IOException if the key sheet can not be read or an input can not
+	 *                     be walked
+	 */
+	public static void main(String[] args) throws IOException {
+		final String usage = "usage: encrypt|decrypt --key <sheet> --output <dir> [--day 31] [--positions QEV] "
+				+ "[--lines] [--threads 8] <input>...";
+		if (args.length < 1)
+			throw new IllegalArgumentException(usage);
+
+		Path sheet = null;
+		Path output = null;
+		String day = null;
+		String positions = "AAA";
+		boolean lines = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		List<String> inputs = new ArrayList<>();
+
+		for (int i = 1; i < args.length; i++) {
+			if (!args[i].startsWith("--")) {
+				inputs.add(args[i]);
+				continue;
+			}
+
+			if (args[i].equals("--lines")) {
+				lines = true;
+				continue;
+			}
+
+			if (i + 1 == args.length)
+				throw new IllegalArgumentException("missing value of " + args[i]);
+
+			switch (args[i]) {
+			case "--key":
+				sheet = Paths.get(args[++i]);
+				break;
+			case "--output":
+				output = Paths.get(args[++i]);
+				break;
+			case "--day":
+				day = args[++i];
+				break;
+			case "--positions":
+				positions = args[++i];
+				break;
+			case "--threads":
+				threads = Integer.parseInt(args[++i]);
+				break;
+			default:
+				throw new IllegalArgumentException("invalid option " + args[i]);
+			}
+		}
+
+		if (sheet == null || output == null || inputs.isEmpty())
+			throw new IllegalArgumentException(usage);
+
+		final KeySheet keys = KeySheet.load(sheet);
+		final KeySheet.Entry entry;
+		if (day != null)
+			entry = keys.get(day);
+		else if (keys.size() == 1)
+			entry = keys.entries().get(0);
+		else
+			throw new IllegalArgumentException("key sheet has " + keys.size() + " keys, select one with --day");
+
+		BulkEnigma bulk = new BulkEnigma(entry.toMachine().toKey(), positions, threads, lines);
+
+		final Report report;
+		switch (args[0]) {
+		case "encrypt":
+			report = bulk.encrypt(inputs, output);
+			break;
+		case "decrypt":
+			report = bulk.decrypt(inputs, output);
+			break;
+		default:
+			throw new IllegalArgumentException("invalid command " + args[0]);
+		}
+
+		for (String failure : report.getFailures())
+			System.err.println("failed " + failure);
+		System.out.println(args[0] + " " + report);
+
+		if (!report.getFailures().isEmpty())
+			System.exit(1);
+	}
+
+	/**
+	 * Checks that a line holds letters only.
+	 *
+	 * @throws IllegalArgumentException at any other character
+	 */
+	private static String requireLetters(String line) {
+		for (int i = 0; i < line.length(); i++) {
+			final char ch = line.charAt(i);
+			if (ch < 'A' || ch > 'Z')
+				throw new IllegalArgumentException(String.format("character 0x%02X can not be enciphered", (int) ch));
+		}
+
+		return line;
+	}
+
+	private static List<Job> walk(Path dir, Predicate<Path> filter) throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			return files
+					.filter(Files::isRegularFile)
+					.filter(filter)
+					.sorted()
+					.map(p -> new Job(p, dir.relativize(p)))
+					.collect(Collectors.toList());
+		}
+	}
+
+	private final EnigmaKey key;
+	private final String positions;
+	private final int threads;
+	private final boolean lines;
+
+	/**
+	 * Creates a bulk engine.
+	 *
+	 * @param key       the compiled key, shared by every thread
+	 * @param positions the initial positions of every message, for example
+	 *                  {@code "QEV"}
+	 * @param threads   the number of files processed in parallel
+	 * @param lines     true to process each line of a file as its own message,
+	 *                  false to process each file as one message
+	 */
+	public BulkEnigma(EnigmaKey key, String positions, int threads, boolean lines) {
+		if (threads <= 0)
+			throw new IllegalArgumentException("threads must be positive " + threads);
+
+		this.key = Objects.requireNonNull(key, "key");
+		this.positions = Objects.requireNonNull(positions, "positions");
+		this.threads = threads;
+		this.lines = lines;
+
+		key.newCursor(positions);
+	}
+
+	/**
+	 * Decrypts the inputs into the output directory.
+	 *
+	 * @param inputs files, directories or globs
+	 * @param output the output directory, created if needed
+	 * @return the totals of the run
+	 * @throws IOException if an input can not be walked
+	 */
+	public Report decrypt(List<String> inputs, Path output) throws IOException {
+		return run(inputs, output, true);
+	}
+
+	/**
+	 * Decrypts a file as one message, streaming it in chunks.
+	 */
+	private long decryptFile(CompiledEnigma cursor, InputStream in, OutputStream out) throws IOException {
+		final ByteBuffer src = ByteBuffer.allocate(BUFFER_SIZE);
+		final ByteBuffer dst = ByteBuffer.allocate(BUFFER_SIZE);
+		final EscapeCodec codec = new EscapeCodec();
+		long bytes = 0;
+
+		int n;
+		while ((n = in.read(src.array(), 0, BUFFER_SIZE)) >= 0) {
+			applyLetters(cursor, src.array(), n);
+			bytes += n;
+
+			src.limit(n).position(0);
+			while (src.hasRemaining()) {
+				codec.unescape(src, dst, false);
+				out.write(dst.array(), 0, dst.position());
+				dst.clear();
+			}
+			src.clear();
+		}
+
+		codec.unescape(src.limit(0), dst, true);
+		out.write(dst.array(), 0, dst.position());
+
+		return bytes;
+	}
+
+	/**
+	 * Encrypts the inputs into the output directory.
+	 *
+	 * @param inputs files, directories or globs
+	 * @param output the output directory, created if needed
+	 * @return the totals of the run
+	 * @throws IOException if an input can not be walked
+	 */
+	public Report encrypt(List<String> inputs, Path output) throws IOException {
+		return run(inputs, output, false);
+	}
+
+	/**
+	 * Encrypts a file as one message, streaming it in chunks.
+	 */
+	private long encryptFile(CompiledEnigma cursor, InputStream in, OutputStream out) throws IOException {
+		final ByteBuffer src = ByteBuffer.allocate(BUFFER_SIZE);
+		final ByteBuffer dst = ByteBuffer.allocate(2 * BUFFER_SIZE);
+		final EscapeCodec codec = new EscapeCodec();
+		long bytes = 0;
+
+		int n;
+		while ((n = in.read(src.array(), 0, BUFFER_SIZE)) >= 0) {
+			bytes += n;
+
+			src.limit(n).position(0);
+			codec.escape(src, dst);
+			applyLetters(cursor, dst.array(), dst.position());
+			out.write(dst.array(), 0, dst.position());
+
+			src.clear();
+			dst.clear();
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Processes one file, returning its message count and input bytes.
+	 */
+	private long[] process(Job job, Path output, boolean decrypt) throws IOException {
+		final Path target = output.resolve(job.relative);
+		if (Files.exists(target) && Files.isSameFile(target, job.source))
+			throw new IllegalArgumentException("output would overwrite the input");
+
+		if (target.getParent() != null)
+			Files.createDirectories(target.getParent());
+
+		final CompiledEnigma cursor = key.newCursor(positions);
+		try {
+			if (lines) {
+				try (BufferedReader in = Files.newBufferedReader(job.source, StandardCharsets.ISO_8859_1);
+						BufferedWriter out = Files.newBufferedWriter(target, StandardCharsets.ISO_8859_1)) {
+					return processLines(cursor, in, out, decrypt);
+				}
+			}
+
+			/* The file is one message, streamed in many calls */
+			cursor.partial = true;
+			try (InputStream in = Files.newInputStream(job.source);
+					OutputStream out = Files.newOutputStream(target)) {
+				final long bytes = decrypt
+						? decryptFile(cursor, in, out)
+						: encryptFile(cursor, in, out);
+
+				EnigmaMetrics.message();
+				return new long[] { 1, bytes };
+			}
+
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(target);
+			throw e;
+		}
+	}
+
+	/**
+	 * Processes each line of a file as a message starting at the initial
+	 * positions.
+	 */
+	private long[] processLines(CompiledEnigma cursor, BufferedReader in, BufferedWriter out, boolean decrypt)
+			throws IOException {
+		final int origin = cursor.getPosition();
+		long messages = 0;
+		long bytes = 0;
+
+		String line;
+		while ((line = in.readLine()) != null) {
+			cursor.setPosition(origin);
+
+			final String result = decrypt
+					? EscapeCodec.unescape(cursor.decrypt(requireLetters(line)))
+					: cursor.encrypt(requireLetters(EscapeCodec.escape(line)));
+
+			out.write(result);
+			out.newLine();
+
+			messages++;
+			bytes += line.length() + 1;
+		}
+
+		return new long[] { messages, bytes };
+	}
+
+	/**
+	 * Expands the inputs and processes every file on a fixed pool.
+	 */
+	private Report run(List<String> inputs, Path output, boolean decrypt) throws IOException {
+		final long start = System.nanoTime();
+
+		final List<Job> jobs = new ArrayList<>();
+		for (String input : inputs)
+			jobs.addAll(expand(input));
+
+		Files.createDirectories(output);
+
+		final List<Callable<long[]>> tasks = new ArrayList<>();
+		for (Job job : jobs)
+			tasks.add(() -> process(job, output, decrypt));
+
+		final ExecutorService pool = Executors.newFixedThreadPool(threads);
+		long messages = 0;
+		long bytes = 0;
+		final List<String> failures = new ArrayList<>();
+		try {
+			final List<Future<long[]>> results = pool.invokeAll(tasks);
+			for (int i = 0; i < results.size(); i++) {
+				try {
+					final long[] counts = results.get(i).get();
+					messages += counts[0];
+					bytes += counts[1];
+
+				} catch (ExecutionException e) {
+					failures.add(jobs.get(i).source + ": " + e.getCause().getMessage());
+				}
+			}
+
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted", e);
+
+		} finally {
+			pool.shutdownNow();
+		}
+
+		return new Report(jobs.size() - failures.size(), messages, bytes, failures, System.nanoTime() - start);
+	}
+}
@@ -0,0 +1,594 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cypher-text-only attack in the style of Gillogly. The search runs in two
+ * stages:
+ *
+ * <ol>
+ * <li>Every rotor order, reflector and start position is scored by the index of
+ * coincidence of its decryption with an empty plugboard. The best
+ * {@code topK} rotor settings are kept.</li>
+ * <li>For each of those, plugboard pairs are found by hill-climbing: every pair
+ * of letters is tried as a plug, and kept when it improves the
+ * {@link TextScorer} score, until no single change improves it.</li>
+ * </ol>
+ *
+ * <p>
+ * Both stages run on a work-stealing {@link ForkJoinPool}, one task per rotor
+ * order and reflector and then one task per candidate. Decryption runs over
+ * the unsteckered scrambler table of each rotor order and preallocated letter
+ * arrays, no objects are allocated per trial decryption. The tables are
+ * compiled for each task, or read from a shared off-heap store when one is set
+ * with {@link #setScramblerTables(ScramblerTables)}.
+ * </p>
+ *
+ * <pre>
+ * NGramModel trigrams = NGramModel.train(corpus, 3);
+ * CiphertextOnlyAttack attack = new CiphertextOnlyAttack(cypherText);
+ * List&lt;CiphertextOnlyAttack.Candidate&gt; best = attack.run(ForkJoinPool.commonPool(), 100, trigrams);
+ * System.out.println(best.get(0).toMachine().decrypt(cypherText));
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class CiphertextOnlyAttack {
+
+	/**
+	 * Receives the progress of a search. Methods are called from the worker
+	 * threads, possibly concurrently.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called each time a rotor order and reflector has been scored, and each
+		 * time a candidate's plugboard has been climbed.
+		 *
+		 * @param stage     1 for rotor settings, 2 for plugboards
+		 * @param completed the number of tasks completed in this stage
+		 * @param total     the number of tasks in this stage
+		 */
+		void onProgress(int stage, int completed, int total);
+	}
+
+	/**
+	 * The kernel scoring rotor settings in the first stage.
+	 */
+	public enum Kernel {
+
+		/**
+		 * Decrypts each start position through the compiled scrambler table of the
+		 * rotor order, one table read per letter.
+		 */
+		COMPILED_TABLE,
+
+		/**
+		 * Decrypts 64 start positions at once with the {@link BitslicedKeyTrial}
+		 * boolean network, without building a scrambler table.
+		 */
+		BITSLICED,
+	}
+
+	/**
+	 * A scored key candidate.
+	 */
+	public static final class Candidate {
+
+		private final int[] rotors;
+		private final int reflector;
+		private final int position;
+		private final String plugboard;
+		private final double score;
+
+		Candidate(int[] rotors, int reflector, int position, String plugboard, double score) {
+			this.rotors = rotors;
+			this.reflector = reflector;
+			this.position = position;
+			this.plugboard = plugboard;
+			this.score = score;
+		}
+
+		/**
+		 * Gets the plugboard pairs, for {@link EnigmaMachine#setPlugboard(String)}.
+		 *
+		 * @return the plugboard pairs, empty if no letters are steckered
+		 */
+		public String getPlugboard() {
+			return plugboard;
+		}
+
+		/**
+		 * Gets the rotor start positions, for
+		 * {@link EnigmaMachine#setInitialPositions(int...)}.
+		 *
+		 * @return the rotor positions
+		 */
+		public int[] getPositions() {
+			return new int[] { position % N, (position / N) % N, position / (N * N) };
+		}
+
+		/**
+		 * Gets the reflector index, see {@link Reflector#REFLECTORS}.
+		 *
+		 * @return the reflector index
+		 */
+		public int getReflector() {
+			return reflector;
+		}
+
+		/**
+		 * Gets the rotor numbers, for {@link EnigmaMachine#setRotors(int...)}.
+		 *
+		 * @return the rotor numbers
+		 */
+		public int[] getRotors() {
+			return rotors.clone();
+		}
+
+		/**
+		 * Gets the score of the candidate's decryption, index of coincidence after
+		 * the first stage and the {@link TextScorer} score after the second.
+		 *
+		 * @return the score, higher is better
+		 */
+		public double getScore() {
+			return score;
+		}
+
+		/**
+		 * Creates a machine set up with this candidate's key.
+		 *
+		 * @return a new machine at the start positions of the message
+		 */
+		public EnigmaMachine toMachine() {
+			EnigmaMachine machine = new EnigmaMachine();
+			machine.setRotors(rotors);
+			machine.setReflector(Reflector.REFLECTOR_NAMES[reflector]);
+			if (!plugboard.isEmpty())
+				machine.setPlugboard(plugboard);
+			machine.setInitialPositions(getPositions());
+
+			return machine;
+		}
+
+		@Override
+		public String toString() {
+			int[] positions = getPositions();
+
+			return "Candidate ["
+					+ "rotors=" + Rotor.ROTOR_NAMES[rotors[0]] + " " + Rotor.ROTOR_NAMES[rotors[1]] + " "
+					+ Rotor.ROTOR_NAMES[rotors[2]]
+					+ ", reflector=" + Reflector.REFLECTOR_NAMES[reflector]
+					+ ", positions=" + (char) ('A' + positions[0]) + (char) ('A' + positions[1])
+					+ (char) ('A' + positions[2])
+					+ ", plugboard=" + plugboard
+					+ ", score=" + score
+					+ "]";
+		}
+	}
+
+	private static final int N = Rotor.ROTOR_POSITIONS;
+
+	private static final Comparator<Candidate> BY_SCORE = Comparator.comparingDouble(Candidate::getScore);
+
+	private final byte[] cypher;
+	private volatile Kernel kernel = Kernel.COMPILED_TABLE;
+	private volatile ScramblerTables scramblerTables;
+
+	/**
+	 * Creates an attack on a cypher text.
+	 *
+	 * @param cypherText the cypher text, letters A to Z
+	 * @throws IllegalArgumentException if the cypher text contains other
+	 *                                  characters or is too short to score
+	 */
+	public CiphertextOnlyAttack(String cypherText) {
+		if (cypherText.length() < 2)
+			throw new IllegalArgumentException("cypher text too short to score");
+
+		this.cypher = new byte[cypherText.length()];
+		for (int i = 0; i < cypher.length; i++) {
+			final char ch = cypherText.charAt(i);
+			if (ch < 'A' || ch > 'Z')
+				throw new IllegalArgumentException("expected letters A to Z, found '" + ch + "'");
+
+			cypher[i] = (byte) (ch - 'A');
+		}
+	}
+
+	/**
+	 * Decrypts the cypher text through a plugboard and the unsteckered scrambler.
+	 *
+	 * @param table the unsteckered scrambler table
+	 * @param bases the table offset for each letter
+	 * @param plug  the plugboard, an involution of the 26 letters
+	 * @param clear receives the decrypted letters
+	 */
+	private void decrypt(ByteBuffer table, int[] bases, int[] plug, byte[] clear) {
+		for (int i = 0; i < cypher.length; i++)
+			clear[i] = (byte) plug[table.get(bases[i] + plug[cypher[i]])];
+	}
+
+	/**
+	 * Finds plugboard pairs for a candidate rotor setting by hill-climbing.
+	 *
+	 * @param candidate the rotor setting from the first stage
+	 * @param scorer    the text scorer to maximise
+	 * @return the candidate with its plugboard and score
+	 */
+	private Candidate climbPlugboard(Candidate candidate, TextScorer scorer) {
+		final int[] rotors = candidate.rotors;
+		final ByteBuffer table = scramblerTable(rotors, candidate.reflector);
+
+		final int[] bases = new int[cypher.length];
+		RotorStepping.bases(RotorStepping.successors(Rotor.ROTOR_NOTCHES[rotors[0]], Rotor.ROTOR_NOTCHES[rotors[1]]),
+				candidate.position, bases, bases.length);
+
+		final byte[] clear = new byte[cypher.length];
+		final int[] plug = new int[N];
+		final int[] trial = new int[N];
+		for (int i = 0; i < N; i++)
+			plug[i] = i;
+
+		decrypt(table, bases, plug, clear);
+		double best = scorer.score(clear, clear.length);
+		int pairs = 0;
+
+		for (boolean improved = true; improved;) {
+			improved = false;
+
+			for (int a = 0; a < N; a++) {
+				for (int b = a + 1; b < N; b++) {
+					System.arraycopy(plug, 0, trial, 0, N);
+					int trialPairs = pairs;
+
+					if (trial[a] == b) {
+						/* Remove the existing a-b plug */
+						trial[a] = a;
+						trial[b] = b;
+						trialPairs--;
+
+					} else {
+						/* Unplug a and b from their current partners, then plug a-b */
+						if (trial[a] != a) {
+							trial[trial[a]] = trial[a];
+							trial[a] = a;
+							trialPairs--;
+						}
+						if (trial[b] != b) {
+							trial[trial[b]] = trial[b];
+							trial[b] = b;
+							trialPairs--;
+						}
+						if (trialPairs >= Plugboard.SWITCH_MAX_ENTRIES)
+							continue;
+
+						trial[a] = b;
+						trial[b] = a;
+						trialPairs++;
+					}
+
+					decrypt(table, bases, trial, clear);
+					final double score = scorer.score(clear, clear.length);
+					if (score > best) {
+						best = score;
+						pairs = trialPairs;
+						System.arraycopy(trial, 0, plug, 0, N);
+						improved = true;
+					}
+				}
+			}
+		}
+
+		StringBuilder plugboard = new StringBuilder();
+		for (int a = 0; a < N; a++) {
+			if (plug[a] > a) {
+				if (plugboard.length() > 0)
+					plugboard.append(' ');
+				plugboard.append((char) ('A' + a)).append((char) ('A' + plug[a]));
+			}
+		}
+
+		return new Candidate(rotors, candidate.reflector, candidate.position, plugboard.toString(), best);
+	}
+
+	/**
+	 * Gets the kernel scoring rotor settings in the first stage.
+	 *
+	 * @return the kernel
+	 */
+	public Kernel getKernel() {
+		return kernel;
+	}
+
+	/**
+	 * Gets the shared store of scrambler tables.
+	 *
+	 * @return the store, or null if the tables are compiled for each task
+	 */
+	public ScramblerTables getScramblerTables() {
+		return scramblerTables;
+	}
+
+	/**
+	 * Runs both stages on the common pool, scoring plugboards by index of
+	 * coincidence.
+	 *
+	 * @param topK the number of rotor settings kept from the first stage
+	 * @return the candidates, best first
+	 */
+	public List<Candidate> run(int topK) {
+		return run(ForkJoinPool.commonPool(), topK, TextScorer.INDEX_OF_COINCIDENCE, (stage, done, total) -> {});
+	}
+
+	/**
+	 * Runs both stages.
+	 *
+	 * @param pool   the pool running the search tasks
+	 * @param topK   the number of rotor settings kept from the first stage
+	 * @param scorer the scorer maximised by the plugboard hill-climb, typically
+	 *               an {@link NGramModel}
+	 * @return the candidates, best first
+	 */
+	public List<Candidate> run(ForkJoinPool pool, int topK, TextScorer scorer) {
+		return run(pool, topK, scorer, (stage, done, total) -> {});
+	}
+
+	/**
+	 * Runs both stages, reporting progress to a listener.
+	 *
+	 * @param pool     the pool running the search tasks
+	 * @param topK     the number of rotor settings kept from the first stage
+	 * @param scorer   the scorer maximised by the plugboard hill-climb,
+	 *                 typically an {@link NGramModel}
+	 * @param listener receives progress from the worker threads
+	 * @return the candidates, best first
+	 */
+	public List<Candidate> run(ForkJoinPool pool, int topK, TextScorer scorer, Listener listener) {
+		if (topK <= 0)
+			throw new IllegalArgumentException("topK must be positive " + topK);
+		Objects.requireNonNull(scorer, "scorer");
+		Objects.requireNonNull(listener, "listener");
+
+		final List<Candidate> settings = scoreRotorSettings(pool, topK, listener);
+
+		final Candidate[] climbed = new Candidate[settings.size()];
+		final AtomicInteger completed = new AtomicInteger();
+		final List<RecursiveAction> tasks = new ArrayList<>();
+		for (int i = 0; i < climbed.length; i++) {
+			final int index = i;
+			tasks.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					climbed[index] = climbPlugboard(settings.get(index), scorer);
+					final int done = completed.incrementAndGet();
+					EnigmaMetrics.progress(CiphertextOnlyAttack.class, 2, done, climbed.length);
+					listener.onProgress(2, done, climbed.length);
+				}
+			});
+		}
+		invokeAll(pool, tasks);
+
+		List<Candidate> results = new ArrayList<>(List.of(climbed));
+		results.sort(BY_SCORE.reversed());
+
+		return results;
+	}
+
+	/**
+	 * Runs the first stage only: scores every rotor order, reflector and start
+	 * position by index of coincidence with an empty plugboard.
+	 *
+	 * @param pool     the pool running one task per rotor order and reflector
+	 * @param topK     the number of rotor settings to keep
+	 * @param listener receives progress from the worker threads
+	 * @return the best rotor settings, best first
+	 */
+	public List<Candidate> scoreRotorSettings(ForkJoinPool pool, int topK, Listener listener) {
+		final List<int[]> orders = Bombe.rotorOrders();
+		final int total = orders.size() * Reflector.REFLECTORS.length;
+		final PriorityQueue<Candidate> best = new PriorityQueue<>(topK + 1, BY_SCORE);
+		final AtomicInteger completed = new AtomicInteger();
+
+		final List<RecursiveAction> tasks = new ArrayList<>();
+		for (int[] rotors : orders) {
+			for (int reflector = 0; reflector < Reflector.REFLECTORS.length; reflector++) {
+				final int r = reflector;
+				tasks.add(new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected void compute() {
+						PriorityQueue<Candidate> local = scoreRotorOrder(rotors, r, topK);
+						synchronized (best) {
+							for (Candidate c : local)
+								offer(best, c, topK);
+						}
+
+						final int done = completed.incrementAndGet();
+						EnigmaMetrics.progress(CiphertextOnlyAttack.class, 1, done, total);
+						listener.onProgress(1, done, total);
+					}
+				});
+			}
+		}
+		invokeAll(pool, tasks);
+
+		List<Candidate> results = new ArrayList<>(best);
+		results.sort(BY_SCORE.reversed());
+
+		return results;
+	}
+
+	/**
+	 * Scores every start position of one rotor order and reflector.
+	 *
+	 * @param rotors    the rotor order
+	 * @param reflector the reflector index
+	 * @param topK      the number of positions to keep
+	 * @return the best positions, as a min-heap by score
+	 */
+	private PriorityQueue<Candidate> scoreRotorOrder(int[] rotors, int reflector, int topK) {
+		if (kernel == Kernel.BITSLICED)
+			return scoreRotorOrderBitsliced(rotors, reflector, topK);
+
+		final ByteBuffer table = scramblerTable(rotors, reflector);
+		final int[] next = RotorStepping.successors(Rotor.ROTOR_NOTCHES[rotors[0]], Rotor.ROTOR_NOTCHES[rotors[1]]);
+
+		final int[] bases = new int[cypher.length];
+		final int[] counts = new int[N];
+		final PriorityQueue<Candidate> local = new PriorityQueue<>(topK + 1, BY_SCORE);
+		double threshold = Double.NEGATIVE_INFINITY;
+
+		for (int position = 0; position < CompiledEnigma.POSITIONS; position++) {
+			RotorStepping.bases(next, position, bases, bases.length);
+
+			for (int i = 0; i < N; i++)
+				counts[i] = 0;
+			for (int i = 0; i < cypher.length; i++)
+				counts[table.get(bases[i] + cypher[i])]++;
+
+			final double ic = TextScorer.indexOfCoincidence(counts, cypher.length);
+			if (ic <= threshold)
+				continue;
+
+			offer(local, new Candidate(rotors, reflector, position, "", ic), topK);
+			if (local.size() == topK)
+				threshold = local.peek().score;
+		}
+
+		return local;
+	}
+
+	/**
+	 * Scores every start position of one rotor order and reflector, 64 positions
+	 * at a time.
+	 *
+	 * @param rotors    the rotor order
+	 * @param reflector the reflector index
+	 * @param topK      the number of positions to keep
+	 * @return the best positions, as a min-heap by score
+	 */
+	private PriorityQueue<Candidate> scoreRotorOrderBitsliced(int[] rotors, int reflector, int topK) {
+		final BitslicedKeyTrial trial = new BitslicedKeyTrial(cypher, rotors, reflector);
+		final double[] scores = new double[BitslicedKeyTrial.LANES];
+		final PriorityQueue<Candidate> local = new PriorityQueue<>(topK + 1, BY_SCORE);
+
+		for (int first = 0; first < CompiledEnigma.POSITIONS; first += BitslicedKeyTrial.LANES) {
+			trial.score(first, scores);
+
+			final int lanes = Math.min(BitslicedKeyTrial.LANES, CompiledEnigma.POSITIONS - first);
+			for (int lane = 0; lane < lanes; lane++)
+				if (local.size() < topK || scores[lane] > local.peek().score)
+					offer(local, new Candidate(rotors, reflector, first + lane, "", scores[lane]), topK);
+		}
+
+		return local;
+	}
+
+	/**
+	 * Sets the kernel scoring rotor settings in the first stage. The compiled
+	 * table is the default.
+	 *
+	 * @param kernel the kernel
+	 */
+	public void setKernel(Kernel kernel) {
+		this.kernel = Objects.requireNonNull(kernel, "kernel");
+	}
+
+	/**
+	 * Sets a shared store of scrambler tables, read instead of compiling the
+	 * tables of each rotor order for every task.
+	 *
+	 * @param scramblerTables the store, or null to compile the tables
+	 */
+	public void setScramblerTables(ScramblerTables scramblerTables) {
+		this.scramblerTables = scramblerTables;
+	}
+
+	/**
+	 * Adds a candidate to a bounded min-heap, evicting the worst when full.
+	 *
+	 * @param heap      the min-heap by score
+	 * @param candidate the candidate to add
+	 * @param topK      the heap's capacity
+	 */
+	private static void offer(PriorityQueue<Candidate> heap, Candidate candidate, int topK) {
+		if (heap.size() < topK) {
+			heap.add(candidate);
+
+		} else if (candidate.score > heap.peek().score) {
+			heap.poll();
+			heap.add(candidate);
+		}
+	}
+
+	/**
+	 * Runs a list of tasks to completion on a pool.
+	 *
+	 * @param pool  the pool
+	 * @param tasks the tasks
+	 */
+	private static void invokeAll(ForkJoinPool pool, List<RecursiveAction> tasks) {
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				ForkJoinTask.invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * Gets the unsteckered scrambler table of a rotor order and reflector from
+	 * the shared store, or builds it when no store is set.
+	 *
+	 * @param rotors    the rotor order
+	 * @param reflector the reflector index
+	 * @return the permutation table of every rotor position
+	 */
+	private ByteBuffer scramblerTable(int[] rotors, int reflector) {
+		final ScramblerTables tables = scramblerTables;
+		if (tables != null)
+			return tables.table(rotors, reflector);
+
+		return ByteBuffer.wrap(ScramblerTables.compile(rotors, reflector));
+	}
+}
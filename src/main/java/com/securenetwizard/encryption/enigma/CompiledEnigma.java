@@ -0,0 +1,583 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Objects;
+
+/**
+ * Precompiled Enigma engine. For a fixed rotor order, reflector and plugboard
+ * the whole data path of the {@link EnigmaMachine} collapses into a single
+ * 26-letter permutation per rotor position. The {@link EnigmaKey} precomputes
+ * that permutation for all {@value #POSITIONS} rotor positions, so each
+ * character costs one table lookup instead of the nine transformation steps.
+ *
+ * <p>
+ * A compiled engine is a lightweight cursor over its key: its own state is the
+ * rotor positions, a few ints. Many cursors may share one key, each cursor is
+ * meant to be used by a single thread at a time.
+ * </p>
+ *
+ * <pre>
+ * table[position * 26 + ch] = plugboard -> rotor1..3 -> reflector -> rotor3..1 -> plugboard
+ * </pre>
+ *
+ * <p>
+ * The position index packs the three rotor dials with {@code rotor1} as the
+ * least significant digit: {@code (dial3 * 26 + dial2) * 26 + dial1}. The
+ * rotors step before each letter exactly as they do in the
+ * {@link EnigmaMachine}, through the key's precomputed successor table, see
+ * {@link RotorStepping}. The ring settings are compiled into the permutation
+ * table, so a cursor works with the dial letters seen in the window.
+ * </p>
+ *
+ * <p>
+ * Example usage:
+ *
+ * <pre>
+ * EnigmaMachine enigma = new EnigmaMachine();
+ * enigma.setRotors("V I IV");
+ * enigma.setReflector("B");
+ * enigma.setPlugboard("SZ GT DV KU FO MY EW JN IX LQ");
+ *
+ * CompiledEnigma compiled = enigma.compile();
+ * compiled.setInitialPositions("A A A");
+ * String cypher = compiled.encrypt("HELLOQQWORLD");
+ * </pre>
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class CompiledEnigma {
+
+	/**
+	 * The number of distinct positions of the three rotors.
+	 */
+	public static final int POSITIONS = Rotor.ROTOR_POSITIONS * Rotor.ROTOR_POSITIONS * Rotor.ROTOR_POSITIONS;
+
+	/**
+	 * Packs three rotor dials into a position index.
+	 *
+	 * @param dial1 the dial of rotor1
+	 * @param dial2 the dial of rotor2
+	 * @param dial3 the dial of rotor3
+	 * @return the position index
+	 */
+	public static int positionIndex(int dial1, int dial2, int dial3) {
+		return (dial3 * Rotor.ROTOR_POSITIONS + dial2) * Rotor.ROTOR_POSITIONS + dial1;
+	}
+
+	private final EnigmaKey key;
+	private final byte[] table;
+	private final int[] next;
+	private final int notch1;
+	private final int notch2;
+
+	/** Position index of the initial positions, the origin of {@link #seek(long)} */
+	private int origin;
+
+	/* Copied to a local by the encryption loops, stores to a direct buffer would otherwise reload it */
+	private int position;
+	private InputPolicy inputPolicy = InputPolicy.REJECT;
+
+	/** Set by engines splitting a message over several calls, which then count the message */
+	boolean partial;
+
+	/**
+	 * Constructs a new compiled engine, or cursor, over a key's precomputed
+	 * permutation table.
+	 *
+	 * @param key    the key holding the permutation table
+	 * @param origin the position index of the initial positions
+	 */
+	CompiledEnigma(EnigmaKey key, int origin) {
+		this.key = key;
+		this.table = key.table();
+		this.next = key.successors();
+		this.notch1 = key.notch1();
+		this.notch2 = key.notch2();
+		this.origin = origin;
+
+		setPosition(origin);
+	}
+
+	/**
+	 * Creates a new engine sharing this engine's key, positioned at this engine's
+	 * initial positions and with the same input policy. The key is immutable, so engines sharing it may be used
+	 * concurrently from different threads.
+	 *
+	 * @return a new engine over the same key
+	 */
+	CompiledEnigma duplicate() {
+		final CompiledEnigma copy = new CompiledEnigma(key, origin);
+		copy.inputPolicy = inputPolicy;
+		copy.partial = partial;
+
+		return copy;
+	}
+
+	/**
+	 * Applies the encryption or decryption process to US-ASCII letters from a
+	 * source array into a destination array. The arrays may be the same. Other
+	 * characters are handled by the input policy, see {@link InputPolicy}.
+	 *
+	 * @param src    the source array
+	 * @param srcOff the offset of the first letter in the source array
+	 * @param dst    the destination array
+	 * @param dstOff the offset of the first letter in the destination array
+	 * @param len    the number of characters to process
+	 * @return the number of characters written to the destination
+	 */
+	private int apply(byte[] src, int srcOff, byte[] dst, int dstOff, int len) {
+		Objects.checkFromIndexSize(srcOff, len, src.length);
+		Objects.checkFromIndexSize(dstOff, len, dst.length);
+
+		final byte[] classes = inputPolicy.classes;
+		final EnigmaEvents.Process event = EnigmaMetrics.beginProcess(len);
+		int out = dstOff;
+		int p = position;
+		for (int i = 0; i < len; i++) {
+			final int ch = src[srcOff + i] & 0xFF;
+			final int letter = classes[ch];
+			if (letter >= 0) {
+				p = next[p];
+				dst[out++] = (byte) ('A' + table[p * Rotor.ROTOR_POSITIONS + letter]);
+			} else if (letter == InputPolicy.PASSED) {
+				dst[out++] = (byte) ch;
+			} else if (letter == InputPolicy.REJECTED) {
+				position = p;
+				throw InputPolicy.rejected(ch, srcOff + i);
+			}
+		}
+		position = p;
+		EnigmaMetrics.endProcess(event, CompiledEnigma.class, len, !partial);
+
+		return out - dstOff;
+	}
+
+	/**
+	 * Applies the encryption or decryption process to the remaining bytes of the
+	 * source buffer, writing the result into the destination buffer. The source
+	 * position is advanced by the number of bytes read and the destination
+	 * position by the number of bytes written.
+	 *
+	 * @param src the source buffer
+	 * @param dst the destination buffer
+	 * @throws BufferOverflowException if the destination has less space remaining
+	 *                                 than the source has bytes
+	 */
+	private void apply(ByteBuffer src, ByteBuffer dst) {
+		final int len = src.remaining();
+		if (dst.remaining() < len)
+			throw new BufferOverflowException();
+
+		final int srcPos = src.position();
+		final int dstPos = dst.position();
+		int out;
+
+		if (src.hasArray() && dst.hasArray()) {
+			out = dstPos + apply(src.array(), src.arrayOffset() + srcPos, dst.array(), dst.arrayOffset() + dstPos, len);
+
+		} else {
+			final byte[] classes = inputPolicy.classes;
+			final EnigmaEvents.Process event = EnigmaMetrics.beginProcess(len);
+			out = dstPos;
+			int p = position;
+			for (int i = 0; i < len; i++) {
+				final int ch = src.get(srcPos + i) & 0xFF;
+				final int letter = classes[ch];
+				if (letter >= 0) {
+					p = next[p];
+					dst.put(out++, (byte) ('A' + table[p * Rotor.ROTOR_POSITIONS + letter]));
+				} else if (letter == InputPolicy.PASSED) {
+					dst.put(out++, (byte) ch);
+				} else if (letter == InputPolicy.REJECTED) {
+					position = p;
+					throw InputPolicy.rejected(ch, srcPos + i);
+				}
+			}
+			position = p;
+			EnigmaMetrics.endProcess(event, CompiledEnigma.class, len, !partial);
+		}
+
+		src.position(srcPos + len);
+		dst.position(out);
+	}
+
+	/**
+	 * Applies the encryption or decryption process to letters from a source array
+	 * into a destination array. The arrays may be the same. Other characters are
+	 * handled by the input policy, see {@link InputPolicy}.
+	 *
+	 * @param src    the source array
+	 * @param srcOff the offset of the first letter in the source array
+	 * @param dst    the destination array
+	 * @param dstOff the offset of the first letter in the destination array
+	 * @param len    the number of characters to process
+	 * @return the number of characters written to the destination
+	 */
+	private int apply(char[] src, int srcOff, char[] dst, int dstOff, int len) {
+		Objects.checkFromIndexSize(srcOff, len, src.length);
+		Objects.checkFromIndexSize(dstOff, len, dst.length);
+
+		final InputPolicy policy = inputPolicy;
+		final EnigmaEvents.Process event = EnigmaMetrics.beginProcess(len);
+		int out = dstOff;
+		int p = position;
+		for (int i = 0; i < len; i++) {
+			final char ch = src[srcOff + i];
+			final int letter = policy.classify(ch);
+			if (letter >= 0) {
+				p = next[p];
+				dst[out++] = (char) ('A' + table[p * Rotor.ROTOR_POSITIONS + letter]);
+			} else if (letter == InputPolicy.PASSED) {
+				dst[out++] = ch;
+			} else if (letter == InputPolicy.REJECTED) {
+				position = p;
+				throw InputPolicy.rejected(ch, srcOff + i);
+			}
+		}
+		position = p;
+		EnigmaMetrics.endProcess(event, CompiledEnigma.class, len, !partial);
+
+		return out - dstOff;
+	}
+
+	/**
+	 * Applies the encryption or decryption process to the remaining characters of
+	 * the source buffer, writing the result into the destination buffer. The
+	 * source position is advanced by the number of characters read and the
+	 * destination position by the number of characters written.
+	 *
+	 * @param src the source buffer
+	 * @param dst the destination buffer
+	 * @throws BufferOverflowException if the destination has less space remaining
+	 *                                 than the source has characters
+	 */
+	private void apply(CharBuffer src, CharBuffer dst) {
+		final int len = src.remaining();
+		if (dst.remaining() < len)
+			throw new BufferOverflowException();
+
+		final int srcPos = src.position();
+		final int dstPos = dst.position();
+		int out;
+
+		if (src.hasArray() && dst.hasArray()) {
+			out = dstPos + apply(src.array(), src.arrayOffset() + srcPos, dst.array(), dst.arrayOffset() + dstPos, len);
+
+		} else {
+			final InputPolicy policy = inputPolicy;
+			final EnigmaEvents.Process event = EnigmaMetrics.beginProcess(len);
+			out = dstPos;
+			int p = position;
+			for (int i = 0; i < len; i++) {
+				final char ch = src.get(srcPos + i);
+				final int letter = policy.classify(ch);
+				if (letter >= 0) {
+					p = next[p];
+					dst.put(out++, (char) ('A' + table[p * Rotor.ROTOR_POSITIONS + letter]));
+				} else if (letter == InputPolicy.PASSED) {
+					dst.put(out++, ch);
+				} else if (letter == InputPolicy.REJECTED) {
+					position = p;
+					throw InputPolicy.rejected(ch, srcPos + i);
+				}
+			}
+			position = p;
+			EnigmaMetrics.endProcess(event, CompiledEnigma.class, len, !partial);
+		}
+
+		src.position(srcPos + len);
+		dst.position(out);
+	}
+
+	/**
+	 * Applies the encryption or decryption process to the input text. Characters
+	 * other than letters are handled by the input policy, see
+	 * {@link InputPolicy}.
+	 *
+	 * @param text the input text to be processed
+	 * @return the processed text
+	 */
+	private String apply(String text) {
+		final int len = text.length();
+		final char[] b = new char[len];
+
+		final InputPolicy policy = inputPolicy;
+		final EnigmaEvents.Process event = EnigmaMetrics.beginProcess(len);
+		int out = 0;
+		int p = position;
+		for (int i = 0; i < len; i++) {
+			final char ch = text.charAt(i);
+			final int letter = policy.classify(ch);
+			if (letter >= 0) {
+				p = next[p];
+				b[out++] = (char) ('A' + table[p * Rotor.ROTOR_POSITIONS + letter]);
+			} else if (letter == InputPolicy.PASSED) {
+				b[out++] = ch;
+			} else if (letter == InputPolicy.REJECTED) {
+				position = p;
+				throw InputPolicy.rejected(ch, i);
+			}
+		}
+		position = p;
+		EnigmaMetrics.endProcess(event, CompiledEnigma.class, len, !partial);
+
+		return new String(b, 0, out);
+	}
+
+	/**
+	 * Decrypts US-ASCII cypher text in place. No objects are allocated.
+	 *
+	 * @param buf the buffer holding the cypher text
+	 * @param off the offset of the first letter
+	 * @param len the number of characters to decrypt
+	 * @return the number of characters written from {@code off}, less than
+	 *         {@code len} only if the input policy skips characters
+	 */
+	public int decrypt(byte[] buf, int off, int len) {
+		return apply(buf, off, buf, off, len);
+	}
+
+	/**
+	 * Decrypts the remaining US-ASCII cypher text of the source buffer into the
+	 * destination buffer. Both buffer positions are advanced. No objects are
+	 * allocated, heap and direct buffers are both supported.
+	 *
+	 * @param src the buffer holding the cypher text
+	 * @param dst the buffer receiving the clear text
+	 * @throws BufferOverflowException if there is insufficient space in the
+	 *                                 destination buffer
+	 */
+	public void decrypt(ByteBuffer src, ByteBuffer dst) {
+		apply(src, dst);
+	}
+
+	/**
+	 * Decrypts cypher text in place. No objects are allocated.
+	 *
+	 * @param buf the buffer holding the cypher text
+	 * @param off the offset of the first letter
+	 * @param len the number of characters to decrypt
+	 * @return the number of characters written from {@code off}, less than
+	 *         {@code len} only if the input policy skips characters
+	 */
+	public int decrypt(char[] buf, int off, int len) {
+		return apply(buf, off, buf, off, len);
+	}
+
+	/**
+	 * Decrypts the remaining cypher text of the source buffer into the destination
+	 * buffer. Both buffer positions are advanced. No objects are allocated.
+	 *
+	 * @param src the buffer holding the cypher text
+	 * @param dst the buffer receiving the clear text
+	 * @throws BufferOverflowException if there is insufficient space in the
+	 *                                 destination buffer
+	 */
+	public void decrypt(CharBuffer src, CharBuffer dst) {
+		apply(src, dst);
+	}
+
+	/**
+	 * Decrypts the input cypher text.
+	 *
+	 * @param cypherText the input cypher text to be decrypted
+	 * @return the decrypted text
+	 */
+	public String decrypt(String cypherText) {
+		return apply(cypherText);
+	}
+
+	/**
+	 * Encrypts US-ASCII clear text in place. No objects are allocated.
+	 *
+	 * @param buf the buffer holding the clear text
+	 * @param off the offset of the first letter
+	 * @param len the number of characters to encrypt
+	 * @return the number of characters written from {@code off}, less than
+	 *         {@code len} only if the input policy skips characters
+	 */
+	public int encrypt(byte[] buf, int off, int len) {
+		return apply(buf, off, buf, off, len);
+	}
+
+	/**
+	 * Encrypts the remaining US-ASCII clear text of the source buffer into the
+	 * destination buffer. Both buffer positions are advanced. No objects are
+	 * allocated, heap and direct buffers are both supported.
+	 *
+	 * @param src the buffer holding the clear text
+	 * @param dst the buffer receiving the cypher text
+	 * @throws BufferOverflowException if there is insufficient space in the
+	 *                                 destination buffer
+	 */
+	public void encrypt(ByteBuffer src, ByteBuffer dst) {
+		apply(src, dst);
+	}
+
+	/**
+	 * Encrypts clear text in place. No objects are allocated.
+	 *
+	 * @param buf the buffer holding the clear text
+	 * @param off the offset of the first letter
+	 * @param len the number of characters to encrypt
+	 * @return the number of characters written from {@code off}, less than
+	 *         {@code len} only if the input policy skips characters
+	 */
+	public int encrypt(char[] buf, int off, int len) {
+		return apply(buf, off, buf, off, len);
+	}
+
+	/**
+	 * Encrypts the remaining clear text of the source buffer into the destination
+	 * buffer. Both buffer positions are advanced. No objects are allocated.
+	 *
+	 * @param src the buffer holding the clear text
+	 * @param dst the buffer receiving the cypher text
+	 * @throws BufferOverflowException if there is insufficient space in the
+	 *                                 destination buffer
+	 */
+	public void encrypt(CharBuffer src, CharBuffer dst) {
+		apply(src, dst);
+	}
+
+	/**
+	 * Encrypts the input clear text.
+	 *
+	 * @param clearText the input clear text to be encrypted
+	 * @return the encrypted text
+	 */
+	public String encrypt(String clearText) {
+		return apply(clearText);
+	}
+
+	/**
+	 * Gets the policy for input characters other than {@code A} to {@code Z}.
+	 *
+	 * @return the input policy
+	 */
+	public InputPolicy getInputPolicy() {
+		return inputPolicy;
+	}
+
+	/**
+	 * Gets the key this engine was created from.
+	 *
+	 * @return the immutable key
+	 */
+	public EnigmaKey getKey() {
+		return key;
+	}
+
+	/**
+	 * Gets the current position index of the rotors.
+	 *
+	 * @return the position index, see {@link #positionIndex(int, int, int)}
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Positions the rotors where they will be after {@code offset} characters
+	 * have been processed from the initial positions, in constant time.
+	 *
+	 * @param offset the character offset from the start of the message
+	 * @throws IllegalArgumentException if the offset is negative
+	 */
+	public void seek(long offset) {
+		final int n = Rotor.ROTOR_POSITIONS;
+		setPosition(RotorStepping.seek(
+				notch1,
+				notch2,
+				origin % n,
+				(origin / n) % n,
+				origin / (n * n),
+				offset));
+	}
+
+	/**
+	 * Sets the initial positions of the rotors using character values.
+	 *
+	 * @param initialLetterPositions the initial positions of the rotors
+	 */
+	public void setInitialPositions(char... initialLetterPositions) {
+		setInitialPositions(Rotor.parseDialCharacters(initialLetterPositions));
+	}
+
+	/**
+	 * Sets the initial positions of the rotors using integer values.
+	 *
+	 * @param initialLetterPositions the initial positions of the rotors
+	 * @throws IndexOutOfBoundsException if a position is not between 0 and 25
+	 */
+	public void setInitialPositions(int... initialLetterPositions) {
+		if (initialLetterPositions.length != 3) {
+			throw new IllegalArgumentException("expected 3 positions for the 3 rotors");
+		}
+
+		this.origin = positionIndex(
+				Objects.checkIndex(initialLetterPositions[0], Rotor.ROTOR_POSITIONS),
+				Objects.checkIndex(initialLetterPositions[1], Rotor.ROTOR_POSITIONS),
+				Objects.checkIndex(initialLetterPositions[2], Rotor.ROTOR_POSITIONS));
+
+		setPosition(origin);
+	}
+
+	/**
+	 * Sets the initial positions of the rotors using a string.
+	 *
+	 * @param initialLetterPositions the initial positions of the rotors
+	 */
+	public void setInitialPositions(String initialLetterPositions) {
+		setInitialPositions(Rotor.parseDialString(initialLetterPositions));
+	}
+
+	/**
+	 * Sets the policy for input characters other than {@code A} to {@code Z},
+	 * {@link InputPolicy#REJECT} by default.
+	 *
+	 * @param inputPolicy the input policy
+	 */
+	public void setInputPolicy(InputPolicy inputPolicy) {
+		this.inputPolicy = Objects.requireNonNull(inputPolicy, "inputPolicy");
+	}
+
+	/**
+	 * Sets the current position index of the rotors.
+	 *
+	 * @param position the position index, see
+	 *                 {@link #positionIndex(int, int, int)}
+	 */
+	public void setPosition(int position) {
+		Objects.checkIndex(position, POSITIONS);
+
+		this.position = position;
+	}
+}
@@ -0,0 +1,282 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Finds where a crib can sit in a cypher text and feeds each legal placement to
+ * the {@link Bombe}.
+ *
+ * <p>
+ * An Enigma never enciphers a letter to itself, so a crib can only sit at
+ * offsets where no crib letter falls on the same cypher letter. Most offsets
+ * of a long crib are ruled out by this test alone, before any key search. The
+ * test compares 8 letters at a time: the crib and cypher text are read as
+ * 64-bit words, XORed, and checked for a zero byte with the usual SWAR
+ * expression {@code (x - 0x0101..) & ~x & 0x8080..}.
+ * </p>
+ *
+ * <p>
+ * Every placement runs a bombe over the same scrambler tables. The bombes read
+ * them from the store set with {@link #setScramblerTables(ScramblerTables)}.
+ * When none is set, the dragger generates one on its first legal placement and
+ * keeps it for every later search.
+ * </p>
+ *
+ * <pre>
+ * CribDragger dragger = new CribDragger("WETTERVORHERSAGE");
+ * for (String intercept : intercepts) {
+ * 	for (CribDragger.Placement placement : dragger.search(intercept)) {
+ * 		System.out.println(placement);
+ * 	}
+ * }
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class CribDragger {
+
+	/**
+	 * The bombe stops found for one crib placement.
+	 */
+	public static final class Placement {
+
+		private final String cypherText;
+		private final int offset;
+		private final List<Bombe.Stop> stops;
+
+		Placement(String cypherText, int offset, List<Bombe.Stop> stops) {
+			this.cypherText = cypherText;
+			this.offset = offset;
+			this.stops = Collections.unmodifiableList(stops);
+		}
+
+		/**
+		 * Gets the cypher text searched.
+		 *
+		 * @return the cypher text
+		 */
+		public String getCypherText() {
+			return cypherText;
+		}
+
+		/**
+		 * Gets the offset of the crib's first letter in the cypher text.
+		 *
+		 * @return the crib offset
+		 */
+		public int getOffset() {
+			return offset;
+		}
+
+		/**
+		 * Gets the verified bombe stops for this placement.
+		 *
+		 * @return the stops, never empty
+		 */
+		public List<Bombe.Stop> getStops() {
+			return stops;
+		}
+
+		@Override
+		public String toString() {
+			return "Placement [offset=" + offset + ", stops=" + stops + "]";
+		}
+	}
+
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGHS = 0x8080808080808080L;
+
+	/**
+	 * Checks if any byte of a word is zero.
+	 *
+	 * @param x the word
+	 * @return true if at least one byte is zero
+	 */
+	private static boolean hasZeroByte(long x) {
+		return ((x - ONES) & ~x & HIGHS) != 0;
+	}
+
+	private final String crib;
+
+	/** Crib letters as words, the last one padded with bytes no letter matches */
+	private final long[] words;
+
+	private volatile ScramblerTables scramblerTables;
+
+	/**
+	 * Creates a crib dragger.
+	 *
+	 * @param crib the known clear text, letters A to Z
+	 * @throws IllegalArgumentException if the crib is empty or contains other
+	 *                                  characters
+	 */
+	public CribDragger(String crib) {
+		this.crib = Objects.requireNonNull(crib, "crib");
+		if (crib.isEmpty())
+			throw new IllegalArgumentException("empty crib");
+
+		final byte[] padded = new byte[(crib.length() + 7) & ~7];
+		Arrays.fill(padded, (byte) 0xFF);
+		for (int i = 0; i < crib.length(); i++) {
+			final char ch = crib.charAt(i);
+			if (ch < 'A' || ch > 'Z')
+				throw new IllegalArgumentException("expected letters A to Z, found '" + ch + "'");
+
+			padded[i] = (byte) ch;
+		}
+
+		this.words = new long[padded.length / 8];
+		for (int i = 0; i < words.length; i++)
+			words[i] = (long) LONGS.get(padded, i * 8);
+	}
+
+	/**
+	 * Gets the crib.
+	 *
+	 * @return the crib
+	 */
+	public String getCrib() {
+		return crib;
+	}
+
+	/**
+	 * Gets the shared store of scrambler tables.
+	 *
+	 * @return the store, or null if none is set or generated yet
+	 */
+	public ScramblerTables getScramblerTables() {
+		return scramblerTables;
+	}
+
+	/**
+	 * Finds every offset where the crib can sit, that is where no crib letter
+	 * falls on the same cypher letter.
+	 *
+	 * @param cypherText the cypher text, letters A to Z
+	 * @return the legal crib offsets, in increasing order
+	 */
+	public int[] legalOffsets(String cypherText) {
+		final int last = cypherText.length() - crib.length();
+		if (last < 0)
+			return new int[0];
+
+		/* Room to read a whole word past the last crib letter */
+		final byte[] cypher = Arrays.copyOf(cypherText.getBytes(StandardCharsets.ISO_8859_1),
+				cypherText.length() + 8);
+
+		int[] offsets = new int[last + 1];
+		int count = 0;
+
+		next: for (int offset = 0; offset <= last; offset++) {
+			for (int w = 0, i = offset; w < words.length; w++, i += 8)
+				if (hasZeroByte((long) LONGS.get(cypher, i) ^ words[w]))
+					continue next;
+
+			offsets[count++] = offset;
+		}
+
+		return Arrays.copyOf(offsets, count);
+	}
+
+	/**
+	 * Runs the bombe at every legal crib offset on the common pool.
+	 *
+	 * @param cypherText the cypher text, letters A to Z
+	 * @return the placements with at least one verified stop
+	 */
+	public List<Placement> search(String cypherText) {
+		return search(cypherText, ForkJoinPool.commonPool(), stop -> {});
+	}
+
+	/**
+	 * Runs the bombe at every legal crib offset.
+	 *
+	 * @param cypherText the cypher text, letters A to Z
+	 * @param pool       the pool running the bombe
+	 * @param listener   receives the bombe's progress and stops, for every
+	 *                   placement
+	 * @return the placements with at least one verified stop
+	 */
+	public List<Placement> search(String cypherText, ForkJoinPool pool, Bombe.Listener listener) {
+		return search(Collections.singletonList(cypherText), pool, listener);
+	}
+
+	/**
+	 * Runs the bombe at every legal crib offset of several cypher texts, such as a
+	 * day's intercepts.
+	 *
+	 * @param cypherTexts the cypher texts, letters A to Z
+	 * @param pool        the pool running the bombe
+	 * @param listener    receives the bombe's progress and stops, for every
+	 *                    placement
+	 * @return the placements with at least one verified stop, in the order of
+	 *         the cypher texts
+	 */
+	public List<Placement> search(List<String> cypherTexts, ForkJoinPool pool, Bombe.Listener listener) {
+		List<Placement> placements = new ArrayList<>();
+		ScramblerTables tables = scramblerTables;
+
+		for (String cypherText : cypherTexts) {
+			for (int offset : legalOffsets(cypherText)) {
+				/* Generated on the first legal placement, then kept for every search */
+				if (tables == null)
+					scramblerTables = tables = ScramblerTables.generate();
+
+				Bombe bombe = new Bombe(cypherText, crib, offset);
+				bombe.setScramblerTables(tables);
+
+				List<Bombe.Stop> stops = bombe.run(pool, listener);
+				if (!stops.isEmpty())
+					placements.add(new Placement(cypherText, offset, stops));
+			}
+		}
+
+		return placements;
+	}
+
+	/**
+	 * Sets a shared store of scrambler tables, read by the bombe of every crib
+	 * placement.
+	 *
+	 * @param scramblerTables the store, or null to generate one on the next search
+	 */
+	public void setScramblerTables(ScramblerTables scramblerTables) {
+		this.scramblerTables = scramblerTables;
+	}
+}
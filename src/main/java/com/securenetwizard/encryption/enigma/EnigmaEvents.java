@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder events of the library. The events are only written
+ * while a recording has them enabled, for example with
+ * {@code -XX:StartFlightRecording}, and cost an allocation the JIT removes
+ * otherwise.
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+final class EnigmaEvents {
+
+	/**
+	 * Progress of a cryptanalysis job, one event each time a unit of work, such
+	 * as a rotor order, completes.
+	 */
+	@Name("com.securenetwizard.enigma.AnalysisProgress")
+	@Label("Analysis Progress")
+	@Category({ "Enigma" })
+	@Description("Progress of a cryptanalysis job")
+	static final class AnalysisProgress extends Event {
+
+		@Label("Job")
+		Class<?> job;
+
+		@Label("Stage")
+		int stage;
+
+		@Label("Completed")
+		int completed;
+
+		@Label("Total")
+		int total;
+	}
+
+	/**
+	 * An encryption or decryption call of at least
+	 * {@link EnigmaMetrics#LARGE_CALL} characters.
+	 */
+	@Name("com.securenetwizard.enigma.Process")
+	@Label("Encrypt or Decrypt")
+	@Category({ "Enigma" })
+	@Description("A large encryption or decryption call")
+	static final class Process extends Event {
+
+		@Label("Engine")
+		Class<?> engine;
+
+		@Label("Characters")
+		long length;
+	}
+
+	/**
+	 * A change of the rotors, reflector or plugboard of a machine, or the
+	 * compilation of its key table.
+	 */
+	@Name("com.securenetwizard.enigma.Rekey")
+	@Label("Re-key")
+	@Category({ "Enigma" })
+	@Description("A change or compilation of the machine's key")
+	static final class Rekey extends Event {
+
+		@Label("Component")
+		String component;
+	}
+
+	private EnigmaEvents() {
+	}
+}
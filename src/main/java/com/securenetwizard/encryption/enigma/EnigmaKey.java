@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.util.Objects;
+
+/**
+ * Immutable Enigma key: the rotor order, reflector, ring settings and plugboard
+ * compiled into the permutation table of every rotor position. A key holds no rotor
+ * positions, so it can be shared freely between threads. Encryption and
+ * decryption go through cursors created by the key, which only carry the
+ * rotor positions and share the key's tables without locking.
+ *
+ * <pre>
+ * EnigmaKey key = EnigmaKey.of("V I IV", "B", "SZ GT DV KU FO MY EW JN IX LQ");
+ *
+ * // on any thread, one cursor per session
+ * CompiledEnigma cursor = key.newCursor("A B C");
+ * String cypher = cursor.encrypt("HELLOQQWORLD");
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class EnigmaKey {
+
+	/**
+	 * Compiles a key from its string settings.
+	 *
+	 * @param rotors         the rotors string (e.g., "V I IV")
+	 * @param reflector      the reflector letter ("B" or "C")
+	 * @param plugboardPairs the plugboard pairs (e.g., "AB CD EF")
+	 * @return the compiled key
+	 * @throws IllegalArgumentException if any setting is invalid
+	 */
+	public static EnigmaKey of(String rotors, String reflector, String plugboardPairs) {
+		return of(rotors, reflector, "A A A", plugboardPairs);
+	}
+
+	/**
+	 * Compiles a key from its string settings, including the ring settings.
+	 *
+	 * @param rotors         the rotors string (e.g., "V I IV")
+	 * @param reflector      the reflector letter ("B" or "C")
+	 * @param ringSettings   the ring settings (e.g., "A B C")
+	 * @param plugboardPairs the plugboard pairs (e.g., "AB CD EF")
+	 * @return the compiled key
+	 * @throws IllegalArgumentException if any setting is invalid
+	 */
+	public static EnigmaKey of(String rotors, String reflector, String ringSettings, String plugboardPairs) {
+		EnigmaMachine machine = new EnigmaMachine();
+		machine.setRotors(rotors);
+		machine.setReflector(reflector);
+		machine.setRingSettings(ringSettings);
+		machine.setPlugboard(plugboardPairs);
+
+		return machine.toKey();
+	}
+
+	private final byte[] table;
+	private final int[] successors;
+	private final int notch1;
+	private final int notch2;
+
+	/**
+	 * Constructs a new key over a precomputed permutation table. The table is
+	 * owned by the key from here on and must not be modified.
+	 *
+	 * @param table  the permutation table, see
+	 *               {@link EnigmaMachine#compileTable()}
+	 * @param notch1 the notch of rotor1
+	 * @param notch2 the notch of rotor2
+	 */
+	EnigmaKey(byte[] table, int notch1, int notch2) {
+		if (table.length != CompiledEnigma.POSITIONS * Rotor.ROTOR_POSITIONS)
+			throw new IllegalArgumentException("invalid permutation table length " + table.length);
+
+		this.table = table;
+		this.successors = RotorStepping.successors(notch1, notch2);
+		this.notch1 = notch1;
+		this.notch2 = notch2;
+	}
+
+	/**
+	 * Creates a cursor starting at the given rotor positions.
+	 *
+	 * @param initialLetterPositions the initial positions of the rotors
+	 * @return a new cursor over this key
+	 * @throws IndexOutOfBoundsException if a position is not between A and Z
+	 */
+	public CompiledEnigma newCursor(char... initialLetterPositions) {
+		return newCursor(Rotor.parseDialCharacters(initialLetterPositions));
+	}
+
+	/**
+	 * Creates a cursor starting at the given rotor positions.
+	 *
+	 * @param initialLetterPositions the initial positions of the rotors
+	 * @return a new cursor over this key
+	 * @throws IndexOutOfBoundsException if a position is not between 0 and 25
+	 */
+	public CompiledEnigma newCursor(int... initialLetterPositions) {
+		if (initialLetterPositions.length != 3) {
+			throw new IllegalArgumentException("expected 3 positions for the 3 rotors");
+		}
+
+		return new CompiledEnigma(this, CompiledEnigma.positionIndex(
+				Objects.checkIndex(initialLetterPositions[0], Rotor.ROTOR_POSITIONS),
+				Objects.checkIndex(initialLetterPositions[1], Rotor.ROTOR_POSITIONS),
+				Objects.checkIndex(initialLetterPositions[2], Rotor.ROTOR_POSITIONS)));
+	}
+
+	/**
+	 * Creates a cursor starting at the given rotor positions.
+	 *
+	 * @param initialLetterPositions the initial positions of the rotors (e.g.,
+	 *                               "A B C")
+	 * @return a new cursor over this key
+	 */
+	public CompiledEnigma newCursor(String initialLetterPositions) {
+		return newCursor(Rotor.parseDialString(initialLetterPositions));
+	}
+
+	/**
+	 * Gets the notch of rotor1.
+	 *
+	 * @return the notch position
+	 */
+	int notch1() {
+		return notch1;
+	}
+
+	/**
+	 * Gets the notch of rotor2.
+	 *
+	 * @return the notch position
+	 */
+	int notch2() {
+		return notch2;
+	}
+
+	/**
+	 * Gets the shared stepping successor table, see
+	 * {@link RotorStepping#successors(int, int)}.
+	 *
+	 * @return the successor of each position index
+	 */
+	int[] successors() {
+		return successors;
+	}
+
+	/**
+	 * Gets the shared permutation table, which must not be modified.
+	 *
+	 * @return the permutation table
+	 */
+	byte[] table() {
+		return table;
+	}
+}
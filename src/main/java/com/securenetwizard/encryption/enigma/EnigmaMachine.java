@@ -23,7 +23,12 @@
  */
 package com.securenetwizard.encryption.enigma;
 
-import java.util.stream.IntStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Enigma machine implementation. The data path is where each character
@@ -39,6 +44,7 @@ import java.util.stream.IntStream;
  * 
  * <pre>
  * [keyboard] 
+ *   -> [rotors step]
  *   -> [plugboard] 
  *     -> [rotor1] 
  *       -> [rotor2] 
@@ -51,6 +57,26 @@ import java.util.stream.IntStream;
  * [light display]
  * </pre>
  * 
+ * <p>
+ * The four rotor M4 is configured with a Greek rotor, {@code Beta} or
+ * {@code Gamma}, named after the three stepping rotors, and a thin reflector
+ * {@code B-THIN} or {@code C-THIN}. The Greek rotor never steps, so it is
+ * folded together with the thin reflector into a single reflector and the M4
+ * runs on the same straight-line three rotor data path and compiled tables.
+ * </p>
+ * 
+ * <pre>
+ * enigma.setRotors("V I IV Beta");
+ * enigma.setReflector("B-THIN");
+ * enigma.setInitialPositions("A B C D"); // D is the Greek rotor
+ * </pre>
+ * 
+ * <p>
+ * The ring settings (Ringstellung) turn each rotor's wiring against its dial
+ * letters, see {@link #setRingSettings(int...)}. They are given in the same
+ * order as the rotors and default to {@code A A A}.
+ * </p>
+ * 
  * @version 1.0
  * @since 2023
  */
@@ -58,86 +84,36 @@ public class EnigmaMachine {
 
 	/**
 	 * Escapes the input text by replacing certain characters with specific
-	 * two-character pairs.
+	 * two-character pairs. Letters are converted to upper case. See
+	 * {@link EscapeCodec} for escaping streams in chunks.
 	 *
 	 * @param text the input text to be escaped
 	 * @return the escaped text
 	 */
 	public static String escape(String text) {
-		StringBuilder b = new StringBuilder(text.length() + 12);
-		text = text.toUpperCase();
-		final int len = text.length();
-
-		for (int i = 0; i < len; i++) {
-			char ch = text.charAt(i);
-			switch (ch) {
-			case '.':
-				b.append("XX");
-				break;
-			case ',':
-				b.append("YY");
-				break;
-			case '?':
-				b.append("ZZ");
-				break;
-			case '!':
-				b.append("JC");
-				break;
-			case ':':
-				b.append("JA");
-				break;
-			case ';':
-				b.append("JB");
-				break;
-			case ' ':
-				b.append("QQ");
-				break;
-			case '0':
-				b.append("QZ");
-				break;
-			case '1':
-				b.append("AA");
-				break;
-			case '2':
-				b.append("BB");
-				break;
-			case '3':
-				b.append("CC");
-				break;
-			case '4':
-				b.append("DD");
-				break;
-			case '5':
-				b.append("EE");
-				break;
-			case '6':
-				b.append("FF");
-				break;
-			case '7':
-				b.append("GG");
-				break;
-			case '8':
-				b.append("HH");
-				break;
-			case '9':
-				b.append("II");
-				break;
-			default:
-				b.append(ch);
-				break;
-			}
-		}
-
-		return b.toString();
+		return EscapeCodec.escape(text);
 	}
 
 	/**
 	 * The main method to demonstrate the Enigma machine encryption and decryption
-	 * process.
+	 * process. When arguments are given, a file is encrypted or decrypted instead,
+	 * see {@link FileEnigma#main(String[])}, or with a first argument of
+	 * {@code bulk} many files, see {@link BulkEnigma#main(String[])}.
 	 *
 	 * @param args command line arguments
+	 * @throws IOException if reading or writing the files fails
 	 */
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0 && args[0].equals("bulk")) {
+			BulkEnigma.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+
+		if (args.length > 0) {
+			FileEnigma.main(args);
+			return;
+		}
+
 		EnigmaMachine enigma = new EnigmaMachine();
 
 		enigma.setRotors("V I IV");
@@ -162,105 +138,214 @@ public class EnigmaMachine {
 
 	/**
 	 * Unescapes the input text by converting two-character pairs back into the
-	 * corresponding single character.
+	 * corresponding single character. See {@link EscapeCodec} for unescaping
+	 * streams in chunks.
 	 *
 	 * @param text the input text to be unescaped
 	 * @return the unescaped text
 	 */
 	public static String unescape(String text) {
-		StringBuilder b = new StringBuilder(text.length());
-		final int len = text.length();
-
-		for (int i = 0; i < len; i++) {
-			char ch = text.charAt(i);
-			if (i + 1 < len) {
-				char nextCh = text.charAt(i + 1);
-				if (ch == 'X' && nextCh == 'X') {
-					b.append('.');
-					i++;
-				} else if (ch == 'Y' && nextCh == 'Y') {
-					b.append(',');
-					i++;
-				} else if (ch == 'Z' && nextCh == 'Z') {
-					b.append('?');
-					i++;
-				} else if (ch == 'J' && nextCh == 'C') {
-					b.append('!');
-					i++;
-				} else if (ch == 'J' && nextCh == 'A') {
-					b.append(':');
-					i++;
-				} else if (ch == 'J' && nextCh == 'B') {
-					b.append(';');
-					i++;
-				} else if (ch == 'Q' && nextCh == 'Q') {
-					b.append(' ');
-					i++;
-				} else if (ch == 'Q' && nextCh == 'Z') {
-					b.append('0');
-					i++;
-				} else if (ch == 'A' && nextCh == 'A') {
-					b.append('1');
-					i++;
-				} else if (ch == 'B' && nextCh == 'B') {
-					b.append('2');
-					i++;
-				} else if (ch == 'C' && nextCh == 'C') {
-					b.append('3');
-					i++;
-				} else if (ch == 'D' && nextCh == 'D') {
-					b.append('4');
-					i++;
-				} else if (ch == 'E' && nextCh == 'E') {
-					b.append('5');
-					i++;
-				} else if (ch == 'F' && nextCh == 'F') {
-					b.append('6');
-					i++;
-				} else if (ch == 'G' && nextCh == 'G') {
-					b.append('7');
-					i++;
-				} else if (ch == 'H' && nextCh == 'H') {
-					b.append('8');
-					i++;
-				} else if (ch == 'I' && nextCh == 'I') {
-					b.append('9');
-					i++;
-				} else {
-					b.append(ch);
-				}
-			} else {
-				b.append(ch);
-			}
-		}
-
-		return b.toString();
+		return EscapeCodec.unescape(text);
 	}
 
-	private Rotor rotor1;
-	private Rotor rotor2;
-	private Rotor rotor3;
+	/* Created once and rewired in place on a re-key */
+	private final Rotor rotor1;
+	private final Rotor rotor2;
+	private final Rotor rotor3;
 	private Reflector reflector;
 	private final Plugboard plugboard;
-	private int[] initialPositions;
+	private final int[] initialPositions = new int[3];
+	private InputPolicy inputPolicy = InputPolicy.REJECT;
+
+	/* Parse buffer of the key string setters, which allocate nothing */
+	private final int[] parsed = new int[4];
+
+	/* The reflector is folded from these when a Greek rotor is present */
+	private int reflectorIndex = Reflector.REFLECTOR_B;
+	private boolean thinReflector;
+	private int greekRotor = -1;
+	private int greekPosition;
+	private int greekRing;
 
 	/**
 	 * Constructor to initialize the Enigma machine with default settings.
 	 */
 	public EnigmaMachine() {
 		this.plugboard = new Plugboard();
-		this.reflector = new Reflector(Reflector.REFLECTOR_B);
-		this.initialPositions = new int[] {
-				0,
-				0,
-				0
-		};
+		this.reflector = Reflector.of(reflectorIndex);
+		this.rotor3 = new Rotor(2);
+		this.rotor2 = new Rotor(1, rotor3);
+		this.rotor1 = new Rotor(0, rotor2);
 
 		setRotors(0, 1, 2);
 	}
 
 	/**
-	 * Applies the encryption or decryption process to the input text.
+	 * Applies the encryption or decryption process to US-ASCII letters from a
+	 * source array into a destination array. The arrays may be the same. Other
+	 * characters are handled by the input policy, see {@link InputPolicy}.
+	 *
+	 * @param src    the source array
+	 * @param srcOff the offset of the first letter in the source array
+	 * @param dst    the destination array
+	 * @param dstOff the offset of the first letter in the destination array
+	 * @param len    the number of characters to process
+	 * @return the number of characters written to the destination
+	 */
+	private int apply(byte[] src, int srcOff, byte[] dst, int dstOff, int len) {
+		Objects.checkFromIndexSize(srcOff, len, src.length);
+		Objects.checkFromIndexSize(dstOff, len, dst.length);
+		checkReflector();
+
+		final byte[] classes = inputPolicy.classes;
+		final EnigmaEvents.Process event = EnigmaMetrics.beginProcess(len);
+		int out = dstOff;
+		for (int i = 0; i < len; i++) {
+			final int ch = src[srcOff + i] & 0xFF;
+			final int letter = classes[ch];
+			if (letter >= 0)
+				dst[out++] = (byte) ('A' + process(letter));
+			else if (letter == InputPolicy.PASSED)
+				dst[out++] = (byte) ch;
+			else if (letter == InputPolicy.REJECTED)
+				throw InputPolicy.rejected(ch, srcOff + i);
+		}
+		EnigmaMetrics.endProcess(event, EnigmaMachine.class, len);
+
+		return out - dstOff;
+	}
+
+	/**
+	 * Applies the encryption or decryption process to the remaining bytes of the
+	 * source buffer, writing the result into the destination buffer. The source
+	 * position is advanced by the number of bytes read and the destination
+	 * position by the number of bytes written.
+	 *
+	 * @param src the source buffer
+	 * @param dst the destination buffer
+	 * @throws BufferOverflowException if the destination has less space remaining
+	 *                                 than the source has bytes
+	 */
+	private void apply(ByteBuffer src, ByteBuffer dst) {
+		final int len = src.remaining();
+		if (dst.remaining() < len)
+			throw new BufferOverflowException();
+
+		final int srcPos = src.position();
+		final int dstPos = dst.position();
+		int out;
+
+		if (src.hasArray() && dst.hasArray()) {
+			out = dstPos + apply(src.array(), src.arrayOffset() + srcPos, dst.array(), dst.arrayOffset() + dstPos, len);
+
+		} else {
+			checkReflector();
+
+			final byte[] classes = inputPolicy.classes;
+			final EnigmaEvents.Process event = EnigmaMetrics.beginProcess(len);
+			out = dstPos;
+			for (int i = 0; i < len; i++) {
+				final int ch = src.get(srcPos + i) & 0xFF;
+				final int letter = classes[ch];
+				if (letter >= 0)
+					dst.put(out++, (byte) ('A' + process(letter)));
+				else if (letter == InputPolicy.PASSED)
+					dst.put(out++, (byte) ch);
+				else if (letter == InputPolicy.REJECTED)
+					throw InputPolicy.rejected(ch, srcPos + i);
+			}
+			EnigmaMetrics.endProcess(event, EnigmaMachine.class, len);
+		}
+
+		src.position(srcPos + len);
+		dst.position(out);
+	}
+
+	/**
+	 * Applies the encryption or decryption process to letters from a source array
+	 * into a destination array. The arrays may be the same. Other characters are
+	 * handled by the input policy, see {@link InputPolicy}.
+	 *
+	 * @param src    the source array
+	 * @param srcOff the offset of the first letter in the source array
+	 * @param dst    the destination array
+	 * @param dstOff the offset of the first letter in the destination array
+	 * @param len    the number of characters to process
+	 * @return the number of characters written to the destination
+	 */
+	private int apply(char[] src, int srcOff, char[] dst, int dstOff, int len) {
+		Objects.checkFromIndexSize(srcOff, len, src.length);
+		Objects.checkFromIndexSize(dstOff, len, dst.length);
+		checkReflector();
+
+		final InputPolicy policy = inputPolicy;
+		final EnigmaEvents.Process event = EnigmaMetrics.beginProcess(len);
+		int out = dstOff;
+		for (int i = 0; i < len; i++) {
+			final char ch = src[srcOff + i];
+			final int letter = policy.classify(ch);
+			if (letter >= 0)
+				dst[out++] = (char) ('A' + process(letter));
+			else if (letter == InputPolicy.PASSED)
+				dst[out++] = ch;
+			else if (letter == InputPolicy.REJECTED)
+				throw InputPolicy.rejected(ch, srcOff + i);
+		}
+		EnigmaMetrics.endProcess(event, EnigmaMachine.class, len);
+
+		return out - dstOff;
+	}
+
+	/**
+	 * Applies the encryption or decryption process to the remaining characters of
+	 * the source buffer, writing the result into the destination buffer. The
+	 * source position is advanced by the number of characters read and the
+	 * destination position by the number of characters written.
+	 *
+	 * @param src the source buffer
+	 * @param dst the destination buffer
+	 * @throws BufferOverflowException if the destination has less space remaining
+	 *                                 than the source has characters
+	 */
+	private void apply(CharBuffer src, CharBuffer dst) {
+		final int len = src.remaining();
+		if (dst.remaining() < len)
+			throw new BufferOverflowException();
+
+		final int srcPos = src.position();
+		final int dstPos = dst.position();
+		int out;
+
+		if (src.hasArray() && dst.hasArray()) {
+			out = dstPos + apply(src.array(), src.arrayOffset() + srcPos, dst.array(), dst.arrayOffset() + dstPos, len);
+
+		} else {
+			checkReflector();
+
+			final InputPolicy policy = inputPolicy;
+			final EnigmaEvents.Process event = EnigmaMetrics.beginProcess(len);
+			out = dstPos;
+			for (int i = 0; i < len; i++) {
+				final char ch = src.get(srcPos + i);
+				final int letter = policy.classify(ch);
+				if (letter >= 0)
+					dst.put(out++, (char) ('A' + process(letter)));
+				else if (letter == InputPolicy.PASSED)
+					dst.put(out++, ch);
+				else if (letter == InputPolicy.REJECTED)
+					throw InputPolicy.rejected(ch, srcPos + i);
+			}
+			EnigmaMetrics.endProcess(event, EnigmaMachine.class, len);
+		}
+
+		src.position(srcPos + len);
+		dst.position(out);
+	}
+
+	/**
+	 * Applies the encryption or decryption process to the input text. Characters
+	 * other than letters are handled by the input policy, see
+	 * {@link InputPolicy}.
 	 *
 	 * @param text the input text to be processed
 	 * @return the processed text
@@ -268,31 +353,143 @@ public class EnigmaMachine {
 	private String apply(String text) {
 		final int len = text.length();
 		StringBuilder b = new StringBuilder(len);
+		checkReflector();
 
+		final InputPolicy policy = inputPolicy;
+		final EnigmaEvents.Process event = EnigmaMetrics.beginProcess(len);
 		for (int i = 0; i < len; i++) {
-			char ch = text.charAt(i);
+			final char ch = text.charAt(i);
+			final int letter = policy.classify(ch);
+			if (letter >= 0)
+				b.append((char) ('A' + process(letter)));
+			else if (letter == InputPolicy.PASSED)
+				b.append(ch);
+			else if (letter == InputPolicy.REJECTED)
+				throw InputPolicy.rejected(ch, i);
+		}
+		EnigmaMetrics.endProcess(event, EnigmaMachine.class, len);
+
+		return b.toString();
+	}
+
+	/**
+	 * Checks that the reflector matches the rotors, a thin reflector with a Greek
+	 * rotor or a regular reflector without one.
+	 *
+	 * @throws IllegalStateException if only one of the M4 components is set
+	 */
+	private void checkReflector() {
+		if (reflector == null)
+			throw new IllegalStateException(thinReflector
+					? "thin reflector " + Reflector.THIN_REFLECTOR_NAMES[reflectorIndex] + " needs a greek rotor"
+					: "greek rotor " + Rotor.GREEK_ROTOR_NAMES[greekRotor] + " needs a thin reflector");
+	}
+
+	/**
+	 * Compiles the current rotor, reflector and plugboard configuration into a
+	 * {@link CompiledEnigma}. The compiled engine starts at this machine's initial
+	 * positions and produces identical output to this machine.
+	 *
+	 * @return a new compiled engine for the current configuration
+	 */
+	public CompiledEnigma compile() {
+		final CompiledEnigma compiled = toKey().newCursor(initialPositions);
+		compiled.setInputPolicy(inputPolicy);
+
+		return compiled;
+	}
+
+	/**
+	 * Builds the composite permutation for every rotor position by running each
+	 * letter through {@link #scramble(int)}. The rotor dials are restored before
+	 * returning.
+	 *
+	 * @return the permutation table, {@code ROTOR_POSITIONS} entries per position
+	 */
+	byte[] compileTable() {
+		checkReflector();
+
+		final int n = Rotor.ROTOR_POSITIONS;
+		final byte[] table = new byte[CompiledEnigma.POSITIONS * n];
+
+		final int dial1 = rotor1.getDial();
+		final int dial2 = rotor2.getDial();
+		final int dial3 = rotor3.getDial();
 
-			ch = applyChar(ch);
+		int offset = 0;
+		for (int d3 = 0; d3 < n; d3++) {
+			rotor3.setDial(d3);
 
-			b.append(ch);
+			for (int d2 = 0; d2 < n; d2++) {
+				rotor2.setDial(d2);
+
+				for (int d1 = 0; d1 < n; d1++) {
+					rotor1.setDial(d1);
+
+					for (int ch = 0; ch < n; ch++)
+						table[offset++] = (byte) scramble(ch);
+				}
+			}
 		}
 
-		return b.toString();
+		rotor1.setDial(dial1);
+		rotor2.setDial(dial2);
+		rotor3.setDial(dial3);
+
+		return table;
 	}
 
 	/**
-	 * Applies the encryption or decryption process to a single character.
+	 * Decrypts US-ASCII cypher text in place. No objects are allocated.
 	 *
-	 * @param ch the input character to be processed
-	 * @return the processed character
+	 * @param buf the buffer holding the cypher text
+	 * @param off the offset of the first letter
+	 * @param len the number of characters to decrypt
+	 * @return the number of characters written from {@code off}, less than
+	 *         {@code len} only if the input policy skips characters
 	 */
-	private char applyChar(char ch) {
-		ch -= 'A';
+	public int decrypt(byte[] buf, int off, int len) {
+		return apply(buf, off, buf, off, len);
+	}
 
-		ch = (char) process(ch);
+	/**
+	 * Decrypts the remaining US-ASCII cypher text of the source buffer into the
+	 * destination buffer. Both buffer positions are advanced. No objects are
+	 * allocated, heap and direct buffers are both supported.
+	 *
+	 * @param src the buffer holding the cypher text
+	 * @param dst the buffer receiving the clear text
+	 * @throws BufferOverflowException if there is insufficient space in the
+	 *                                 destination buffer
+	 */
+	public void decrypt(ByteBuffer src, ByteBuffer dst) {
+		apply(src, dst);
+	}
 
-		ch += 'A';
-		return ch;
+	/**
+	 * Decrypts cypher text in place. No objects are allocated.
+	 *
+	 * @param buf the buffer holding the cypher text
+	 * @param off the offset of the first letter
+	 * @param len the number of characters to decrypt
+	 * @return the number of characters written from {@code off}, less than
+	 *         {@code len} only if the input policy skips characters
+	 */
+	public int decrypt(char[] buf, int off, int len) {
+		return apply(buf, off, buf, off, len);
+	}
+
+	/**
+	 * Decrypts the remaining cypher text of the source buffer into the destination
+	 * buffer. Both buffer positions are advanced. No objects are allocated.
+	 *
+	 * @param src the buffer holding the cypher text
+	 * @param dst the buffer receiving the clear text
+	 * @throws BufferOverflowException if there is insufficient space in the
+	 *                                 destination buffer
+	 */
+	public void decrypt(CharBuffer src, CharBuffer dst) {
+		apply(src, dst);
 	}
 
 	/**
@@ -305,6 +502,59 @@ public class EnigmaMachine {
 		return apply(cypherText);
 	}
 
+	/**
+	 * Encrypts US-ASCII clear text in place. No objects are allocated.
+	 *
+	 * @param buf the buffer holding the clear text
+	 * @param off the offset of the first letter
+	 * @param len the number of characters to encrypt
+	 * @return the number of characters written from {@code off}, less than
+	 *         {@code len} only if the input policy skips characters
+	 */
+	public int encrypt(byte[] buf, int off, int len) {
+		return apply(buf, off, buf, off, len);
+	}
+
+	/**
+	 * Encrypts the remaining US-ASCII clear text of the source buffer into the
+	 * destination buffer. Both buffer positions are advanced. No objects are
+	 * allocated, heap and direct buffers are both supported.
+	 *
+	 * @param src the buffer holding the clear text
+	 * @param dst the buffer receiving the cypher text
+	 * @throws BufferOverflowException if there is insufficient space in the
+	 *                                 destination buffer
+	 */
+	public void encrypt(ByteBuffer src, ByteBuffer dst) {
+		apply(src, dst);
+	}
+
+	/**
+	 * Encrypts clear text in place. No objects are allocated.
+	 *
+	 * @param buf the buffer holding the clear text
+	 * @param off the offset of the first letter
+	 * @param len the number of characters to encrypt
+	 * @return the number of characters written from {@code off}, less than
+	 *         {@code len} only if the input policy skips characters
+	 */
+	public int encrypt(char[] buf, int off, int len) {
+		return apply(buf, off, buf, off, len);
+	}
+
+	/**
+	 * Encrypts the remaining clear text of the source buffer into the destination
+	 * buffer. Both buffer positions are advanced. No objects are allocated.
+	 *
+	 * @param src the buffer holding the clear text
+	 * @param dst the buffer receiving the cypher text
+	 * @throws BufferOverflowException if there is insufficient space in the
+	 *                                 destination buffer
+	 */
+	public void encrypt(CharBuffer src, CharBuffer dst) {
+		apply(src, dst);
+	}
+
 	/**
 	 * Encrypts the input clear text.
 	 *
@@ -315,6 +565,15 @@ public class EnigmaMachine {
 		return apply(clearText);
 	}
 
+	/**
+	 * Gets the policy for input characters other than {@code A} to {@code Z}.
+	 *
+	 * @return the input policy
+	 */
+	public InputPolicy getInputPolicy() {
+		return inputPolicy;
+	}
+
 	/**
 	 * Processes the ASCII value through the Enigma machine's components.
 	 *
@@ -323,11 +582,19 @@ public class EnigmaMachine {
 	 */
 	private int process(int ascii) {
 //		System.out.printf("'%c'", 'A' + ascii);
-//		rotor1.rotate();
-		
-		char ch;
-		ch = (char) ('A' + ascii);
+		step();
+
+		return scramble(ascii);
+	}
 
+	/**
+	 * Passes the ASCII value through the plugboard, rotors and reflector at the
+	 * current rotor positions, without stepping the rotors.
+	 *
+	 * @param ascii the input ASCII value to be processed
+	 * @return the processed ASCII value
+	 */
+	private int scramble(int ascii) {
         ascii = plugboard.exchange(ascii);
 //		System.out.printf("P[%c].", 'A' + ascii);
 		
@@ -361,45 +628,177 @@ public class EnigmaMachine {
 	}
 
 	/**
-	 * Sets the initial positions of the rotors using character values.
+	 * Positions the rotors where they will be after {@code offset} characters
+	 * have been processed from the initial positions. The position is computed in
+	 * constant time, which allows decrypting from the middle of a message or
+	 * resuming a stream without processing the preceding characters.
+	 *
+	 * @param offset the character offset from the start of the message
+	 * @throws IllegalArgumentException if the offset is negative
+	 */
+	public void seek(long offset) {
+		int position = RotorStepping.seek(
+				rotor1.getNotch(),
+				rotor2.getNotch(),
+				initialPositions[0],
+				initialPositions[1],
+				initialPositions[2],
+				offset);
+
+		final int n = Rotor.ROTOR_POSITIONS;
+		rotor1.setDial(position % n);
+		rotor2.setDial((position / n) % n);
+		rotor3.setDial(position / (n * n));
+	}
+
+	/**
+	 * Sets the initial positions of the rotors using character values. A fourth
+	 * letter sets the position of the Greek rotor, which is otherwise set to A.
 	 *
 	 * @param initialLetterPositions the initial positions of the rotors
 	 */
 	public void setInitialPositions(char... initialLetterPositions) {
-		setInitialPositions(Rotor.parseDialCharacters(initialLetterPositions));
+		if (initialLetterPositions.length > parsed.length)
+			throw new IllegalArgumentException("expecting 3 or 4 initial rotor positions "
+					+ Arrays.toString(initialLetterPositions));
+
+		for (int i = 0; i < initialLetterPositions.length; i++)
+			parsed[i] = initialLetterPositions[i] - 'A';
+
+		setPositions(parsed, initialLetterPositions.length);
 	}
 
 	/**
-	 * Sets the initial positions of the rotors using integer values.
+	 * Sets the initial positions of the rotors using integer values. A fourth
+	 * value sets the position of the Greek rotor, which is otherwise set to A,
+	 * so a reused machine never keeps the Greek position of an earlier key.
 	 *
 	 * @param initialLetterPositions the initial positions of the rotors
 	 */
 	public void setInitialPositions(int... initialLetterPositions) {
-		if (initialLetterPositions.length != 3) {
-			throw new IllegalArgumentException("expected 3 positions for the 3 rotors");
+		setPositions(initialLetterPositions, initialLetterPositions.length);
+	}
+
+	/**
+	 * Sets the initial positions of the rotors using a string of letters, for
+	 * example {@code "A B C"}, parsed without allocating.
+	 *
+	 * @param initialLetterPositions the initial positions of the rotors
+	 */
+	public void setInitialPositions(String initialLetterPositions) {
+		final int count = Rotor.parseDials(initialLetterPositions, parsed);
+		if (count != 3 && count != 4)
+			throw new IllegalArgumentException("expecting 3 or 4 rotor initial letter positions " + initialLetterPositions);
+
+		setPositions(parsed, count);
+	}
+
+	/**
+	 * Copies the initial positions into place and sets the rotor dials. The
+	 * array is never kept, so the callers may pass a parse buffer.
+	 *
+	 * @param positions the positions, a fourth sets the Greek rotor, A when
+	 *                  absent
+	 * @param count     the number of positions in the array
+	 */
+	private void setPositions(int[] positions, int count) {
+		if (count != 3 && count != 4)
+			throw new IllegalArgumentException("expected 3 positions for the 3 rotors, or 4 with the greek rotor");
+
+		final int position = (count == 4) ? positions[3] : 0;
+		if (position < 0 || position >= Rotor.ROTOR_POSITIONS)
+			throw new IllegalArgumentException("invalid greek rotor position " + position);
+
+		if (position != greekPosition) {
+			greekPosition = position;
+			updateReflector();
 		}
 
-		this.initialPositions = initialLetterPositions;
+		System.arraycopy(positions, 0, initialPositions, 0, 3);
 
-		rotor1.setDial(this.initialPositions[0]);
-		rotor2.setDial(this.initialPositions[1]);
-		rotor3.setDial(this.initialPositions[2]);
+		rotor1.setDial(initialPositions[0]);
+		rotor2.setDial(initialPositions[1]);
+		rotor3.setDial(initialPositions[2]);
 	}
 
 	/**
-	 * Sets the initial positions of the rotors using a string.
+	 * Sets the policy for input characters other than {@code A} to {@code Z},
+	 * {@link InputPolicy#REJECT} by default. The policy is
+	 * passed on to the engines created by {@link #compile()}.
 	 *
-	 * @param initialLetterPositions the initial positions of the rotors
+	 * @param inputPolicy the input policy
 	 */
-	public void setInitialPositions(String initialLetterPositions) {
-		initialLetterPositions = initialLetterPositions.replaceAll("\\s+", "");
-		if (initialLetterPositions.length() != 3)
-			throw new IllegalArgumentException("expecting 3 rotor initial letter positions " + initialLetterPositions);
+	public void setInputPolicy(InputPolicy inputPolicy) {
+		this.inputPolicy = Objects.requireNonNull(inputPolicy, "inputPolicy");
+	}
 
-		setInitialPositions(
-				initialLetterPositions.charAt(0),
-				initialLetterPositions.charAt(1),
-				initialLetterPositions.charAt(2));
+	/**
+	 * Sets the ring settings of the rotors using character values, see
+	 * {@link #setRingSettings(int...)}.
+	 *
+	 * @param ringLetters the ring settings, {@code 'A'} to {@code 'Z'}
+	 */
+	public void setRingSettings(char... ringLetters) {
+		if (ringLetters.length > parsed.length)
+			throw new IllegalArgumentException("invalid ring settings " + Arrays.toString(ringLetters));
+
+		for (int i = 0; i < ringLetters.length; i++)
+			parsed[i] = ringLetters[i] - 'A';
+
+		setRings(parsed, ringLetters.length);
+	}
+
+	/**
+	 * Sets the ring settings (Ringstellung) of the rotors using integer values,
+	 * in the same order as the rotors. A fourth value sets the ring of the Greek
+	 * rotor. The ring turns a rotor's wiring against its dial letters while the
+	 * rotor keeps turning over at the same dial letter, so the rotor positions
+	 * are still given as the letters seen in the window.
+	 *
+	 * @param rings the ring settings, 0 for A to 25 for Z
+	 * @throws IllegalArgumentException if a ring setting is out of range
+	 */
+	public void setRingSettings(int... rings) {
+		setRings(rings, rings.length);
+	}
+
+	/**
+	 * Sets the ring settings of the rotors using a string of letters, for example
+	 * {@code "A B C"}, or of the numbers 01 to 26, for example
+	 * {@code "01 02 03"}. The string is parsed without allocating.
+	 *
+	 * @param ringSettings the ring settings
+	 */
+	public void setRingSettings(String ringSettings) {
+		setRings(parsed, Rotor.parseDials(ringSettings, parsed));
+	}
+
+	/**
+	 * Sets the ring settings on the rotors. The array is never kept, so the
+	 * callers may pass a parse buffer.
+	 *
+	 * @param rings the ring settings, a fourth sets the Greek rotor
+	 * @param count the number of ring settings in the array
+	 */
+	private void setRings(int[] rings, int count) {
+		if (count != 3 && count != 4)
+			throw new IllegalArgumentException("expected 3 ring settings for the 3 rotors, or 4 with the greek rotor");
+
+		for (int i = 0; i < count; i++)
+			if (rings[i] < 0 || rings[i] >= Rotor.ROTOR_POSITIONS)
+				throw new IllegalArgumentException("invalid ring settings " + Arrays.toString(Arrays.copyOf(rings, count)));
+
+		final EnigmaEvents.Rekey event = EnigmaMetrics.beginRekey();
+		rotor1.setRing(rings[0]);
+		rotor2.setRing(rings[1]);
+		rotor3.setRing(rings[2]);
+
+		if (count == 4 && rings[3] != greekRing) {
+			greekRing = rings[3];
+			updateReflector();
+		}
+
+		EnigmaMetrics.endRekey(event, "rings");
 	}
 
 	/**
@@ -408,58 +807,179 @@ public class EnigmaMachine {
 	 * @param plugBoardPairs the plugboard configuration
 	 */
 	public void setPlugboard(String plugBoardPairs) {
+		final EnigmaEvents.Rekey event = EnigmaMetrics.beginRekey();
 		plugboard.setPlugboard(plugBoardPairs);
+		EnigmaMetrics.endRekey(event, "plugboard");
 	}
 
 	/**
-	 * Sets the reflector configuration using a string.
+	 * Sets the plugboard configuration from a pre-parsed wiring, see
+	 * {@link Plugboard#parseWiring(String)}. The wiring is copied in place, so a
+	 * key parsed once can re-key the machine any number of times.
+	 *
+	 * @param plugboardWiring the 26 entry wiring, each letter mapped to its
+	 *                        partner or itself
+	 */
+	public void setPlugboard(int[] plugboardWiring) {
+		final EnigmaEvents.Rekey event = EnigmaMetrics.beginRekey();
+		plugboard.setWiring(plugboardWiring);
+		EnigmaMetrics.endRekey(event, "plugboard");
+	}
+
+	/**
+	 * Sets the reflector configuration using a string. The M4 thin reflectors
+	 * {@code B-THIN} and {@code C-THIN} are used together with a Greek rotor, see
+	 * {@link #setRotors(String)}.
 	 *
 	 * @param reflectorLetterBorC the reflector configuration
 	 */
 	public void setReflector(String reflectorLetterBorC) {
+		final EnigmaEvents.Rekey event = EnigmaMetrics.beginRekey();
+
 		switch (reflectorLetterBorC.toUpperCase()) {
 		case "B":
-			this.reflector = new Reflector(Reflector.REFLECTOR_B);
+			this.reflectorIndex = Reflector.REFLECTOR_B;
+			this.thinReflector = false;
 			break;
 		case "C":
-			this.reflector = new Reflector(Reflector.REFLECTOR_C);
+			this.reflectorIndex = Reflector.REFLECTOR_C;
+			this.thinReflector = false;
+			break;
+		case "B-THIN":
+			this.reflectorIndex = Reflector.REFLECTOR_B_THIN;
+			this.thinReflector = true;
+			break;
+		case "C-THIN":
+			this.reflectorIndex = Reflector.REFLECTOR_C_THIN;
+			this.thinReflector = true;
 			break;
 
 		default:
 			throw new IllegalArgumentException("invalid reflector letter " + reflectorLetterBorC);
 		}
+
+		updateReflector();
+		EnigmaMetrics.endRekey(event, "reflector");
+	}
+
+	/**
+	 * Steps the rotors before a key press. Rotor1 always advances and carries
+	 * into the next rotors as it leaves its notch. When rotor2 sits on its own
+	 * notch it advances together with rotor3, which is the double step of the
+	 * historical machine.
+	 */
+	private void step() {
+		if (rotor2.isAtNotch() && !rotor1.isAtNotch())
+			rotor2.rotate();
+
+		rotor1.rotate();
 	}
 
 	/**
-	 * Sets the rotors configuration using an array of rotor numbers.
+	 * Sets the rotors configuration using an array of rotor numbers. A fourth
+	 * number selects the Greek rotor of the M4, {@link Rotor#GREEK_BETA} or
+	 * {@link Rotor#GREEK_GAMMA}, and 3 numbers remove it.
 	 *
 	 * @param rotorNumbers the rotor configuration
 	 */
 	public void setRotors(int... rotorNumbers) {
-		if (rotorNumbers.length != 3)
-			throw new IllegalArgumentException("expected 3 rotor numbers");
+		if (rotorNumbers.length != 3 && rotorNumbers.length != 4)
+			throw new IllegalArgumentException("expected 3 rotor numbers, or 4 with the greek rotor");
 
-		long validatedRotors = IntStream.of(rotorNumbers)
-				.filter(i -> i >= 0 && i < 5)
-				.count();
-		if (validatedRotors != 3)
-			throw new IllegalArgumentException("rotor numbers must be between 0 and 4 inclusive");
+		for (int i = 0; i < 3; i++)
+			if (rotorNumbers[i] < 0 || rotorNumbers[i] >= Rotor.ROTORS.length)
+				throw new IllegalArgumentException("rotor numbers must be between 0 and 4 inclusive");
 
-		this.rotor3 = new Rotor(rotorNumbers[2]);
-		this.rotor2 = new Rotor(rotorNumbers[1], rotor3);
-		this.rotor1 = new Rotor(rotorNumbers[0], rotor2);
+		final int greek = (rotorNumbers.length == 4) ? rotorNumbers[3] : -1;
+		if (rotorNumbers.length == 4 && (greek < 0 || greek >= Rotor.GREEK_ROTORS.length))
+			throw new IllegalArgumentException("greek rotor number must be 0 or 1 " + greek);
 
-		setInitialPositions(initialPositions);
+		setRotors(rotorNumbers[0], rotorNumbers[1], rotorNumbers[2], greek);
 	}
 
 	/**
-	 * Sets the rotors configuration using a string of rotor numbers.
+	 * Rewires the rotors in place from the shared wiring tables, keeping their
+	 * ring settings, and returns them to the initial positions.
+	 *
+	 * @param r1    the fast rotor
+	 * @param r2    the middle rotor
+	 * @param r3    the slow rotor
+	 * @param greek the Greek rotor, or -1 for none
+	 */
+	private void setRotors(int r1, int r2, int r3, int greek) {
+		final EnigmaEvents.Rekey event = EnigmaMetrics.beginRekey();
+		rotor1.setWiring(r1);
+		rotor2.setWiring(r2);
+		rotor3.setWiring(r3);
+
+		if (greek != greekRotor) {
+			greekRotor = greek;
+			updateReflector();
+		}
+
+		setPositions(initialPositions, 3);
+		EnigmaMetrics.endRekey(event, "rotors");
+	}
+
+	/**
+	 * Sets the rotors configuration using a string of rotor numbers, for example
+	 * {@code "V I IV"}. A fourth name, {@code Beta} or {@code Gamma}, adds the
+	 * Greek rotor of the M4. The string is parsed without allocating.
 	 *
 	 * @param rotoNumbers the rotor configuration
 	 */
 	public void setRotors(String rotoNumbers) {
-		int[] rotorNos = Rotor.parseRotorsString(rotoNumbers);
+		int count = 0;
+		for (int start = 0, len = rotoNumbers.length(); start < len; start++) {
+			if (rotoNumbers.charAt(start) == ' ')
+				continue;
+
+			int end = rotoNumbers.indexOf(' ', start);
+			if (end < 0)
+				end = len;
+
+			if (count == parsed.length)
+				throw new IllegalArgumentException("expecting 3 rotor indexes, or 4 with the greek rotor");
+
+			parsed[count] = (count < 3)
+					? Rotor.parseRotorName(rotoNumbers, start, end)
+					: Rotor.parseGreekRotorName(rotoNumbers, start, end);
+			count++;
+			start = end;
+		}
 
-		setRotors(rotorNos);
+		if (count != 3 && count != 4)
+			throw new IllegalArgumentException("expecting 3 rotor indexes, or 4 with the greek rotor");
+
+		setRotors(parsed[0], parsed[1], parsed[2], (count == 4) ? parsed[3] : -1);
+	}
+
+	/**
+	 * Compiles the current rotor, reflector and plugboard configuration into an
+	 * immutable {@link EnigmaKey}, which can be shared between threads.
+	 *
+	 * @return a new key for the current configuration
+	 */
+	public EnigmaKey toKey() {
+		final EnigmaEvents.Rekey event = EnigmaMetrics.beginRekey();
+		final EnigmaKey key = new EnigmaKey(compileTable(), rotor1.getNotch(), rotor2.getNotch());
+		EnigmaMetrics.endRekey(event, "table");
+
+		return key;
+	}
+
+	/**
+	 * Rebuilds the reflector after a change of reflector or Greek rotor. A thin
+	 * reflector is folded with the Greek rotor at its position less its ring, while a thin
+	 * reflector without a Greek rotor or the reverse leaves the machine without
+	 * a reflector until the configuration is completed.
+	 */
+	private void updateReflector() {
+		if (thinReflector && greekRotor >= 0)
+			reflector = Reflector.folded(reflectorIndex, greekRotor, greekPosition - greekRing);
+		else if (!thinReflector && greekRotor < 0)
+			reflector = Reflector.of(reflectorIndex);
+		else
+			reflector = null;
 	}
 }
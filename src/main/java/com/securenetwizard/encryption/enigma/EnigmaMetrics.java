@@ -0,0 +1,361 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import jdk.jfr.EventType;
+
+/**
+ * Library wide counters and flight recorder events of the encryption hot path.
+ *
+ * <p>
+ * The counters are enabled with the {@code enigma.metrics} system property,
+ * which is read once when the class is loaded. When enabled, the counters are
+ * {@link LongAdder}s striped across threads and the MXBean is registered with
+ * the platform MBean server as {@value #OBJECT_NAME}. When disabled, the
+ * switch is a constant the JIT folds away, so the engines run the same code as
+ * without instrumentation. Counting is per call, never per character, so the
+ * inner loops of {@link EnigmaMachine} and {@link CompiledEnigma} are never
+ * touched.
+ * </p>
+ *
+ * <p>
+ * Flight recorder events are independent of the counters and are written
+ * whenever a recording enables them: re-keys, encryption and decryption calls
+ * of at least {@value #LARGE_CALL} characters, and cryptanalysis progress.
+ * </p>
+ *
+ * <pre>
+ * java -Denigma.metrics=true -XX:StartFlightRecording=filename=enigma.jfr ...
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class EnigmaMetrics implements EnigmaMetricsMXBean {
+
+	/**
+	 * True if the counters are updated, from the {@code enigma.metrics} system
+	 * property.
+	 */
+	public static final boolean ENABLED = Boolean.getBoolean("enigma.metrics");
+
+	/**
+	 * The smallest encryption or decryption call, in characters, recorded as a
+	 * flight recorder event.
+	 */
+	public static final int LARGE_CALL = 64 * 1024;
+
+	/**
+	 * The name the MXBean is registered under.
+	 */
+	public static final String OBJECT_NAME = "com.securenetwizard.encryption.enigma:type=EnigmaMetrics";
+
+	private static final EnigmaMetrics INSTANCE = new EnigmaMetrics();
+
+	/** Checked before allocating a large call event, which would escape */
+	private static final EventType PROCESS_TYPE = EventType.getEventType(EnigmaEvents.Process.class);
+
+	/** Checked before allocating a re-key event, so re-keying stays allocation free */
+	private static final EventType REKEY_TYPE = EventType.getEventType(EnigmaEvents.Rekey.class);
+
+	/** The shortest window the message rate is measured over */
+	private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+
+	static {
+		if (ENABLED)
+			register();
+	}
+
+	/**
+	 * Begins timing an encryption or decryption call.
+	 *
+	 * @param len the number of characters of the call
+	 * @return the started event, or null if the call is small or no recording
+	 *         has the event enabled
+	 */
+	static EnigmaEvents.Process beginProcess(int len) {
+		if (len < LARGE_CALL || !PROCESS_TYPE.isEnabled())
+			return null;
+
+		EnigmaEvents.Process event = new EnigmaEvents.Process();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Begins timing a re-key.
+	 *
+	 * @return the started event, or null if no recording has the event enabled
+	 */
+	static EnigmaEvents.Rekey beginRekey() {
+		if (!REKEY_TYPE.isEnabled())
+			return null;
+
+		EnigmaEvents.Rekey event = new EnigmaEvents.Rekey();
+		event.begin();
+
+		return event;
+	}
+
+	/**
+	 * Counts a key cache eviction.
+	 */
+	static void cacheEviction() {
+		if (ENABLED)
+			INSTANCE.cacheEvictions.increment();
+	}
+
+	/**
+	 * Counts a key cache hit.
+	 */
+	static void cacheHit() {
+		if (ENABLED)
+			INSTANCE.cacheHits.increment();
+	}
+
+	/**
+	 * Counts a key cache miss.
+	 */
+	static void cacheMiss() {
+		if (ENABLED)
+			INSTANCE.cacheMisses.increment();
+	}
+
+	/**
+	 * Ends an encryption or decryption call of a whole message, counting it and
+	 * committing its event if one was started.
+	 *
+	 * @param event  the event from {@link #beginProcess(int)}, or null
+	 * @param engine the engine class
+	 * @param len    the number of characters processed
+	 */
+	static void endProcess(EnigmaEvents.Process event, Class<?> engine, int len) {
+		endProcess(event, engine, len, true);
+	}
+
+	/**
+	 * Ends an encryption or decryption call, counting it and committing its
+	 * event if one was started.
+	 *
+	 * @param event   the event from {@link #beginProcess(int)}, or null
+	 * @param engine  the engine class
+	 * @param len     the number of characters processed
+	 * @param message true if the call processed a whole message, false if the
+	 *                engine driving the calls counts the message, see
+	 *                {@link #message()}
+	 */
+	static void endProcess(EnigmaEvents.Process event, Class<?> engine, int len, boolean message) {
+		if (ENABLED) {
+			INSTANCE.characters.add(len);
+			if (message)
+				INSTANCE.messages.increment();
+		}
+
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.engine = engine;
+				event.length = len;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Ends a re-key, counting it and committing its event if one was started.
+	 *
+	 * @param event     the event from {@link #beginRekey()}, or null
+	 * @param component the part of the key changed, or "table" for a
+	 *                  compilation
+	 */
+	static void endRekey(EnigmaEvents.Rekey event, String component) {
+		if (ENABLED)
+			INSTANCE.rekeys.increment();
+
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.component = component;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Gets the library's metrics.
+	 *
+	 * @return the metrics
+	 */
+	public static EnigmaMetrics getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Counts a message processed in several calls, each ended without counting a
+	 * message, such as the chunks of {@link ParallelEnigma}.
+	 */
+	static void message() {
+		if (ENABLED)
+			INSTANCE.messages.increment();
+	}
+
+	/**
+	 * Records the progress of a cryptanalysis job.
+	 *
+	 * @param job       the job class
+	 * @param stage     the stage of the job, 1 for single stage jobs
+	 * @param completed the units of work completed so far
+	 * @param total     the total units of work
+	 */
+	static void progress(Class<?> job, int stage, int completed, int total) {
+		EnigmaEvents.AnalysisProgress event = new EnigmaEvents.AnalysisProgress();
+		if (event.shouldCommit()) {
+			event.job = job;
+			event.stage = stage;
+			event.completed = completed;
+			event.total = total;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Registers the MXBean with the platform MBean server, unless already
+	 * registered. Called automatically when {@link #ENABLED}.
+	 *
+	 * @throws IllegalStateException if the MXBean can not be registered
+	 */
+	public static void register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+
+		} catch (InstanceAlreadyExistsException e) {
+			return;
+
+		} catch (JMException e) {
+			throw new IllegalStateException("unable to register " + OBJECT_NAME, e);
+		}
+	}
+
+	private final LongAdder characters = new LongAdder();
+	private final LongAdder messages = new LongAdder();
+	private final LongAdder rekeys = new LongAdder();
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+	private final LongAdder cacheEvictions = new LongAdder();
+
+	/** Guarded by this, the start of the current rate window and the rate of the last one */
+	private long windowNanos = System.nanoTime();
+	private long windowMessages;
+	private double messageRate;
+
+	private EnigmaMetrics() {
+	}
+
+	@Override
+	public long getCacheEvictions() {
+		return cacheEvictions.sum();
+	}
+
+	@Override
+	public long getCacheHits() {
+		return cacheHits.sum();
+	}
+
+	@Override
+	public long getCacheMisses() {
+		return cacheMisses.sum();
+	}
+
+	@Override
+	public long getCharactersProcessed() {
+		return characters.sum();
+	}
+
+	@Override
+	public synchronized double getMessagesPerSecond() {
+		final long now = System.nanoTime();
+		final long elapsed = now - windowNanos;
+
+		/* Reads within a window all see the rate of the previous one */
+		if (elapsed >= RATE_WINDOW_NANOS) {
+			final long count = messages.sum();
+			messageRate = (count - windowMessages) * 1e9 / elapsed;
+			windowNanos = now;
+			windowMessages = count;
+		}
+
+		return messageRate;
+	}
+
+	@Override
+	public long getMessagesProcessed() {
+		return messages.sum();
+	}
+
+	@Override
+	public long getRekeyCount() {
+		return rekeys.sum();
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return ENABLED;
+	}
+
+	@Override
+	public synchronized void reset() {
+		characters.reset();
+		messages.reset();
+		rekeys.reset();
+		cacheHits.reset();
+		cacheMisses.reset();
+		cacheEvictions.reset();
+
+		windowNanos = System.nanoTime();
+		windowMessages = 0;
+		messageRate = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "EnigmaMetrics ["
+				+ "enabled=" + ENABLED
+				+ ", characters=" + getCharactersProcessed()
+				+ ", messages=" + getMessagesProcessed()
+				+ ", rekeys=" + getRekeyCount()
+				+ ", cacheHits=" + getCacheHits()
+				+ ", cacheMisses=" + getCacheMisses()
+				+ ", cacheEvictions=" + getCacheEvictions()
+				+ "]";
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+/**
+ * Management interface of {@link EnigmaMetrics}, registered with the platform
+ * MBean server.
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public interface EnigmaMetricsMXBean {
+
+	/**
+	 * Gets the number of compiled keys evicted from all key caches.
+	 *
+	 * @return the evictions
+	 */
+	long getCacheEvictions();
+
+	/**
+	 * Gets the number of key cache lookups that found a compiled key.
+	 *
+	 * @return the hits
+	 */
+	long getCacheHits();
+
+	/**
+	 * Gets the number of key cache lookups that compiled a key.
+	 *
+	 * @return the misses
+	 */
+	long getCacheMisses();
+
+	/**
+	 * Gets the number of characters encrypted or decrypted.
+	 *
+	 * @return the characters processed
+	 */
+	long getCharactersProcessed();
+
+	/**
+	 * Gets the number of messages encrypted or decrypted. Every call of
+	 * {@link EnigmaMachine} and {@link CompiledEnigma} is a message, while
+	 * {@link ParallelEnigma}, {@link FileEnigma} and {@link BulkEnigma} count a
+	 * message once however many calls it is split into.
+	 *
+	 * @return the messages processed
+	 */
+	long getMessagesProcessed();
+
+	/**
+	 * Gets the message rate over the last complete sampling window. A window is
+	 * at least one second long and ends at the first read after that, so
+	 * several clients reading within a window all see the same rate.
+	 *
+	 * @return the messages per second
+	 */
+	double getMessagesPerSecond();
+
+	/**
+	 * Gets the number of rotor, reflector and plugboard changes and key
+	 * compilations.
+	 *
+	 * @return the re-keys
+	 */
+	long getRekeyCount();
+
+	/**
+	 * Checks if the counters are being updated, which is decided once at start
+	 * up by the {@code enigma.metrics} system property.
+	 *
+	 * @return true if the counters are updated
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Resets every counter to zero.
+	 */
+	void reset();
+}
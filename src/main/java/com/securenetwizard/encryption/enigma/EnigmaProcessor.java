@@ -0,0 +1,356 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Reactive stream stage encrypting each message of a
+ * {@link java.util.concurrent.Flow} stream under one key. Enigma decryption is
+ * the same operation as encryption, so the same processor decrypts a stream of
+ * cypher texts.
+ *
+ * <p>
+ * The key is set up once per stream, through the usual {@link EnigmaMachine}
+ * configuration methods, and compiled into a {@link CompiledEnigma}. Every
+ * message starts at the initial positions of that configuration and is
+ * handled according to its {@link InputPolicy}.
+ * </p>
+ *
+ * <p>
+ * Messages are only requested from upstream as the subscriber asks for them,
+ * and never more than the buffer size ahead of the subscriber, so a slow
+ * subscriber slows the publisher down instead of filling memory, and the
+ * publisher's thread never blocks. A subscriber's {@code request(n)} is turned
+ * into a single upstream request, and the messages that arrive are encrypted
+ * and delivered in one task on the executor rather than one task per message.
+ * </p>
+ *
+ * <p>
+ * A processor has a single subscriber. An upstream error is passed on at once,
+ * dropping the buffered messages, and a message the input policy rejects
+ * cancels the upstream and ends the stream with that error.
+ * </p>
+ *
+ * <pre>
+ * EnigmaProcessor processor = new EnigmaProcessor(machine -&gt; {
+ * 	machine.setRotors("V I IV");
+ * 	machine.setReflector("B");
+ * 	machine.setPlugboard("SZ GT DV KU FO MY EW JN IX LQ");
+ * 	machine.setInitialPositions("Q E V");
+ * });
+ * publisher.subscribe(processor);
+ * processor.subscribe(subscriber);
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class EnigmaProcessor implements Flow.Processor<String, String> {
+
+	/**
+	 * The default number of messages buffered ahead of the subscriber.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = Flow.defaultBufferSize();
+
+	/**
+	 * The subscription handed to the subscriber.
+	 */
+	private final class Downstream implements Flow.Subscription {
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			schedule();
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				error = new IllegalArgumentException("non-positive subscription request " + n);
+				cancelled = true;
+			} else {
+				demand.getAndAccumulate(n, (d, m) -> (d + m < 0) ? Long.MAX_VALUE : d + m);
+			}
+
+			schedule();
+		}
+	}
+
+	private final CompiledEnigma cursor;
+	private final Executor executor;
+	private final int bufferSize;
+	private final Queue<String> queue;
+
+	private final AtomicLong demand = new AtomicLong();
+	private final AtomicInteger wip = new AtomicInteger();
+
+	private volatile Flow.Subscription upstream;
+	private volatile Flow.Subscriber<? super String> downstream;
+	private boolean subscribed;
+	private volatile boolean done;
+	private volatile boolean cancelled;
+	private volatile Throwable error;
+
+	/* Only touched by the drain loop */
+	private long requested;
+	private long consumed;
+	private boolean terminated;
+
+	/**
+	 * Creates a processor running on the common pool with the default buffer
+	 * size.
+	 *
+	 * @param key sets up the key of the stream on a new machine
+	 * @throws IllegalArgumentException if the key is invalid
+	 */
+	public EnigmaProcessor(Consumer<? super EnigmaMachine> key) {
+		this(key, ForkJoinPool.commonPool(), DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a processor.
+	 *
+	 * @param key        sets up the key of the stream on a new machine
+	 * @param executor   the executor encrypting and delivering the messages
+	 * @param bufferSize the most messages requested ahead of the subscriber
+	 * @throws IllegalArgumentException if the key is invalid or the buffer size
+	 *                                  is not positive
+	 */
+	public EnigmaProcessor(Consumer<? super EnigmaMachine> key, Executor executor, int bufferSize) {
+		if (bufferSize <= 0)
+			throw new IllegalArgumentException("buffer size must be positive " + bufferSize);
+
+		final EnigmaMachine machine = new EnigmaMachine();
+		key.accept(machine);
+
+		this.cursor = machine.compile();
+		this.executor = Objects.requireNonNull(executor, "executor");
+		this.bufferSize = bufferSize;
+		this.queue = new ArrayBlockingQueue<>(bufferSize);
+	}
+
+	/**
+	 * Encrypts the queued messages the subscriber has asked for, delivers the
+	 * terminal signal once due, and tops up the upstream requests. Runs on the
+	 * executor, one drain at a time.
+	 */
+	private void drain() {
+		int missed = 1;
+
+		for (;;) {
+			final Flow.Subscriber<? super String> subscriber = downstream;
+
+			if (cancelled || error != null) {
+				queue.clear();
+
+				final Flow.Subscription subscription = upstream;
+				if (subscription != null)
+					subscription.cancel();
+
+				if (error != null && subscriber != null && !terminated) {
+					terminated = true;
+					subscriber.onError(error);
+				}
+
+			} else if (subscriber != null && !terminated) {
+				final long wanted = demand.get();
+				long emitted = 0;
+
+				while (emitted != wanted) {
+					final String text = queue.poll();
+					if (text == null)
+						break;
+
+					consumed++;
+
+					final String result;
+					try {
+						cursor.seek(0);
+						result = cursor.encrypt(text);
+
+					} catch (RuntimeException e) {
+						error = e;
+						break;
+					}
+
+					subscriber.onNext(result);
+					emitted++;
+
+					if (cancelled)
+						break;
+				}
+
+				if (error != null || cancelled)
+					continue;
+
+				final long remaining = (wanted == Long.MAX_VALUE) ? wanted : demand.addAndGet(-emitted);
+
+				if (done && queue.isEmpty()) {
+					terminated = true;
+					subscriber.onComplete();
+
+				} else {
+					final Flow.Subscription subscription = upstream;
+					final long inFlight = requested - consumed;
+					final long target = Math.min(bufferSize, remaining);
+
+					if (subscription != null && !done && inFlight < target) {
+						requested += target - inFlight;
+						subscription.request(target - inFlight);
+					}
+				}
+			}
+
+			missed = wip.addAndGet(-missed);
+			if (missed == 0)
+				break;
+		}
+	}
+
+	/**
+	 * Completes the stream once the buffered messages have been delivered.
+	 */
+	@Override
+	public void onComplete() {
+		done = true;
+		schedule();
+	}
+
+	/**
+	 * Passes an upstream error on to the subscriber, dropping the buffered
+	 * messages.
+	 *
+	 * @param throwable the upstream error
+	 */
+	@Override
+	public void onError(Throwable throwable) {
+		error = Objects.requireNonNull(throwable, "throwable");
+		done = true;
+		schedule();
+	}
+
+	/**
+	 * Buffers a message until the subscriber asks for it.
+	 *
+	 * @param item the message
+	 */
+	@Override
+	public void onNext(String item) {
+		Objects.requireNonNull(item, "item");
+
+		if (!queue.offer(item))
+			error = new IllegalStateException("publisher sent more messages than were requested");
+
+		schedule();
+	}
+
+	/**
+	 * Accepts the upstream subscription. A second subscription is cancelled.
+	 *
+	 * @param subscription the upstream subscription
+	 */
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		Objects.requireNonNull(subscription, "subscription");
+
+		synchronized (this) {
+			if (upstream != null) {
+				subscription.cancel();
+				return;
+			}
+
+			upstream = subscription;
+		}
+
+		schedule();
+	}
+
+	/**
+	 * Runs the drain loop on the executor, unless it is running already, in which
+	 * case it goes round once more.
+	 */
+	private void schedule() {
+		if (wip.getAndIncrement() != 0)
+			return;
+
+		try {
+			executor.execute(this::drain);
+
+		} catch (RejectedExecutionException e) {
+			cancelled = true;
+
+			final Flow.Subscription subscription = upstream;
+			if (subscription != null)
+				subscription.cancel();
+
+			final Flow.Subscriber<? super String> subscriber = downstream;
+			if (subscriber != null)
+				subscriber.onError(e);
+		}
+	}
+
+	/**
+	 * Subscribes the single subscriber of the encrypted messages. Any further
+	 * subscriber is failed with an {@link IllegalStateException}.
+	 *
+	 * @param subscriber the subscriber
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super String> subscriber) {
+		Objects.requireNonNull(subscriber, "subscriber");
+
+		synchronized (this) {
+			if (subscribed) {
+				subscriber.onSubscribe(new Flow.Subscription() {
+					@Override
+					public void cancel() {
+					}
+
+					@Override
+					public void request(long n) {
+					}
+				});
+				subscriber.onError(new IllegalStateException("an EnigmaProcessor has a single subscriber"));
+				return;
+			}
+
+			subscribed = true;
+		}
+
+		/* Published after onSubscribe returns, no other signal may come first */
+		subscriber.onSubscribe(new Downstream());
+		downstream = subscriber;
+		schedule();
+	}
+}
@@ -0,0 +1,371 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Table driven codec for the escape encoding of
+ * {@link EnigmaMachine#escape(String)}, which turns punctuation, spaces and
+ * digits into letter pairs the machine can encrypt.
+ *
+ * <p>
+ * Escaping looks each US-ASCII character up in a 128 entry table holding its
+ * upper case letter or its two letter code. Unescaping looks each pair of
+ * letters up in a 26 x 26 entry table holding the character the pair decodes
+ * to, if any. Both are a single pass without intermediate strings.
+ * </p>
+ *
+ * <p>
+ * The buffer methods process text in chunks. A pair can be split between two
+ * chunks, so a codec instance remembers the last letter of a chunk until the
+ * next one shows whether it starts a pair. An instance is therefore used for
+ * one stream at a time, and is not safe to share between threads. The static
+ * {@code String} methods are stateless.
+ * </p>
+ *
+ * <pre>
+ * EscapeCodec codec = new EscapeCodec();
+ * while (in.read(src) != -1) {
+ * 	src.flip();
+ * 	codec.unescape(src, dst, false);
+ * 	src.compact();
+ * 	...
+ * }
+ * src.flip();
+ * codec.unescape(src, dst, true);
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class EscapeCodec {
+
+	private static final int ASCII = 128;
+	private static final int N = Rotor.ROTOR_POSITIONS;
+
+	/** The character, or first letter of the code, each ASCII character escapes to */
+	private static final char[] ESCAPE_FIRST = new char[ASCII];
+
+	/** The second letter of the code, 0 if the character escapes to one letter */
+	private static final char[] ESCAPE_SECOND = new char[ASCII];
+
+	/** The character each pair of letters unescapes to, 0 if the pair is not a code */
+	private static final char[] UNESCAPE = new char[N * N];
+
+	/** The letter index of each ASCII character, -1 if not an upper case letter */
+	private static final byte[] LETTER = new byte[ASCII];
+
+	static {
+		final String codes = ""
+				+ ".XX"
+				+ ",YY"
+				+ "?ZZ"
+				+ "!JC"
+				+ ":JA"
+				+ ";JB"
+				+ " QQ"
+				+ "0QZ"
+				+ "1AA"
+				+ "2BB"
+				+ "3CC"
+				+ "4DD"
+				+ "5EE"
+				+ "6FF"
+				+ "7GG"
+				+ "8HH"
+				+ "9II";
+
+		for (int ch = 0; ch < ASCII; ch++) {
+			ESCAPE_FIRST[ch] = (ch >= 'a' && ch <= 'z') ? (char) (ch - 'a' + 'A') : (char) ch;
+			LETTER[ch] = (byte) ((ch >= 'A' && ch <= 'Z') ? ch - 'A' : -1);
+		}
+
+		for (int i = 0; i < codes.length(); i += 3) {
+			final char ch = codes.charAt(i);
+			final char first = codes.charAt(i + 1);
+			final char second = codes.charAt(i + 2);
+
+			ESCAPE_FIRST[ch] = first;
+			ESCAPE_SECOND[ch] = second;
+			UNESCAPE[(first - 'A') * N + (second - 'A')] = ch;
+		}
+	}
+
+	/**
+	 * Escapes a text, see {@link EnigmaMachine#escape(String)}. Letters are
+	 * converted to upper case, escaped characters are replaced by their codes and
+	 * every other character is kept.
+	 *
+	 * @param text the clear text
+	 * @return the escaped text
+	 */
+	public static String escape(String text) {
+		final int len = text.length();
+		final StringBuilder b = new StringBuilder(len + 12);
+
+		for (int i = 0; i < len; i++) {
+			final char ch = text.charAt(i);
+
+			if (ch >= ASCII) {
+				b.append(Character.toUpperCase(ch));
+				continue;
+			}
+
+			b.append(ESCAPE_FIRST[ch]);
+			if (ESCAPE_SECOND[ch] != 0)
+				b.append(ESCAPE_SECOND[ch]);
+		}
+
+		return b.toString();
+	}
+
+	/**
+	 * Looks up the character a pair of characters unescapes to.
+	 *
+	 * @param first  the first character
+	 * @param second the second character
+	 * @return the unescaped character, 0 if the pair is not a code
+	 */
+	private static char pair(int first, int second) {
+		if (first >= ASCII || second >= ASCII || LETTER[first] < 0 || LETTER[second] < 0)
+			return 0;
+
+		return UNESCAPE[LETTER[first] * N + LETTER[second]];
+	}
+
+	/**
+	 * Unescapes a text, see {@link EnigmaMachine#unescape(String)}. Codes are
+	 * replaced by the character they stand for, scanning left to right, and every
+	 * other character is kept.
+	 *
+	 * @param text the escaped text
+	 * @return the clear text
+	 */
+	public static String unescape(String text) {
+		final int len = text.length();
+		final StringBuilder b = new StringBuilder(len);
+
+		for (int i = 0; i < len; i++) {
+			final char ch = text.charAt(i);
+			final char decoded = (i + 1 < len) ? pair(ch, text.charAt(i + 1)) : 0;
+
+			if (decoded != 0) {
+				b.append(decoded);
+				i++;
+
+			} else {
+				b.append(ch);
+			}
+		}
+
+		return b.toString();
+	}
+
+	/** The last character of the previous chunk, -1 if none is waiting */
+	private int pending = -1;
+
+	/**
+	 * Creates a codec with no pending character.
+	 */
+	public EscapeCodec() {
+	}
+
+	/**
+	 * Escapes US-ASCII bytes from a source buffer into a destination buffer.
+	 * Processing stops when the source is empty or the destination has no room
+	 * for the next character's escape, at most 2 bytes. Bytes outside US-ASCII
+	 * are copied unchanged.
+	 *
+	 * @param src the clear text
+	 * @param dst receives the escaped text
+	 * @throws BufferOverflowException if the destination has less than 2 bytes
+	 *                                 of room and the source is not empty
+	 */
+	public void escape(ByteBuffer src, ByteBuffer dst) {
+		if (src.hasRemaining() && dst.remaining() < 2)
+			throw new BufferOverflowException();
+
+		while (src.hasRemaining()) {
+			final int ch = src.get(src.position()) & 0xFF;
+
+			if (ch >= ASCII) {
+				dst.put((byte) ch);
+
+			} else if (ESCAPE_SECOND[ch] == 0) {
+				dst.put((byte) ESCAPE_FIRST[ch]);
+
+			} else if (dst.remaining() >= 2) {
+				dst.put((byte) ESCAPE_FIRST[ch]);
+				dst.put((byte) ESCAPE_SECOND[ch]);
+
+			} else {
+				break;
+			}
+
+			src.position(src.position() + 1);
+			if (!dst.hasRemaining())
+				break;
+		}
+	}
+
+	/**
+	 * Escapes characters from a source buffer into a destination buffer.
+	 * Processing stops when the source is empty or the destination has no room
+	 * for the next character's escape, at most 2 characters.
+	 *
+	 * @param src the clear text
+	 * @param dst receives the escaped text
+	 * @throws BufferOverflowException if the destination has less than 2
+	 *                                 characters of room and the source is not
+	 *                                 empty
+	 */
+	public void escape(CharBuffer src, CharBuffer dst) {
+		if (src.hasRemaining() && dst.remaining() < 2)
+			throw new BufferOverflowException();
+
+		while (src.hasRemaining()) {
+			final char ch = src.get(src.position());
+
+			if (ch >= ASCII) {
+				dst.put(Character.toUpperCase(ch));
+
+			} else if (ESCAPE_SECOND[ch] == 0) {
+				dst.put(ESCAPE_FIRST[ch]);
+
+			} else if (dst.remaining() >= 2) {
+				dst.put(ESCAPE_FIRST[ch]);
+				dst.put(ESCAPE_SECOND[ch]);
+
+			} else {
+				break;
+			}
+
+			src.position(src.position() + 1);
+			if (!dst.hasRemaining())
+				break;
+		}
+	}
+
+	/**
+	 * Checks if the last character of the previous chunk is waiting for the next
+	 * chunk to show whether it starts a code.
+	 *
+	 * @return true if a character is pending
+	 */
+	public boolean hasPending() {
+		return pending >= 0;
+	}
+
+	/**
+	 * Discards any pending character, so the codec can start a new stream.
+	 */
+	public void reset() {
+		pending = -1;
+	}
+
+	/**
+	 * Unescapes US-ASCII bytes from a source buffer into a destination buffer.
+	 * Processing stops when the source is empty or the destination is full. The
+	 * last byte of a chunk is held back until the next chunk, or until the end of
+	 * the input, since it may start a code.
+	 *
+	 * @param src        the escaped text
+	 * @param dst        receives the clear text
+	 * @param endOfInput true if {@code src} holds the end of the stream, which
+	 *                   releases the last held back byte
+	 */
+	public void unescape(ByteBuffer src, ByteBuffer dst, boolean endOfInput) {
+		while (dst.hasRemaining()) {
+			if (pending < 0) {
+				if (!src.hasRemaining())
+					break;
+
+				pending = src.get() & 0xFF;
+			}
+
+			if (!src.hasRemaining()) {
+				if (endOfInput) {
+					dst.put((byte) pending);
+					pending = -1;
+				}
+				break;
+			}
+
+			final char decoded = pair(pending, src.get(src.position()) & 0xFF);
+			if (decoded != 0) {
+				src.position(src.position() + 1);
+				dst.put((byte) decoded);
+
+			} else {
+				dst.put((byte) pending);
+			}
+
+			pending = -1;
+		}
+	}
+
+	/**
+	 * Unescapes characters from a source buffer into a destination buffer.
+	 * Processing stops when the source is empty or the destination is full. The
+	 * last character of a chunk is held back until the next chunk, or until the
+	 * end of the input, since it may start a code.
+	 *
+	 * @param src        the escaped text
+	 * @param dst        receives the clear text
+	 * @param endOfInput true if {@code src} holds the end of the stream, which
+	 *                   releases the last held back character
+	 */
+	public void unescape(CharBuffer src, CharBuffer dst, boolean endOfInput) {
+		while (dst.hasRemaining()) {
+			if (pending < 0) {
+				if (!src.hasRemaining())
+					break;
+
+				pending = src.get();
+			}
+
+			if (!src.hasRemaining()) {
+				if (endOfInput) {
+					dst.put((char) pending);
+					pending = -1;
+				}
+				break;
+			}
+
+			final char decoded = pair(pending, src.get(src.position()));
+			if (decoded != 0) {
+				src.position(src.position() + 1);
+				dst.put(decoded);
+
+			} else {
+				dst.put((char) pending);
+			}
+
+			pending = -1;
+		}
+	}
+}
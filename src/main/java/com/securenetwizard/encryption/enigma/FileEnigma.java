@@ -0,0 +1,314 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * File encryption and decryption through memory mapped {@link FileChannel}
+ * regions. The input file is mapped read-only, the output is written to a
+ * temporary file next to the output file, sized up front and mapped
+ * read-write, and moved into place once every region is done, so a failure
+ * never leaves a partial output behind. Each region is processed straight from the
+ * input mapping into the output mapping. Regions are processed in parallel on
+ * a {@link ForkJoinPool}, each seeking its own cursor to the region's offset.
+ * No part of the file is copied onto the heap or turned into a {@code String}.
+ *
+ * <p>
+ * The input must already be escaped US-ASCII text, letters {@code A} to
+ * {@code Z} only, see {@link EnigmaMachine#escape(String)}. Regions seek to
+ * their byte offset and the output is sized to the input, so the key's input
+ * policy must be {@link InputPolicy#REJECT}.
+ * </p>
+ *
+ * <pre>
+ * EnigmaMachine enigma = new EnigmaMachine();
+ * enigma.setRotors("V I IV");
+ * enigma.setPlugboard("SZ GT DV KU FO MY EW JN IX LQ");
+ * enigma.setInitialPositions("A B C");
+ *
+ * new FileEnigma(enigma).encrypt(Path.of("clear.txt"), Path.of("cypher.txt"));
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class FileEnigma {
+
+	/**
+	 * The default size of a mapped region.
+	 */
+	public static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * Processes a range of regions, splitting it until a single region is left.
+	 */
+	private class RegionTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final FileChannel in;
+		private final FileChannel out;
+		private final long size;
+		private final long fromRegion;
+		private final long toRegion;
+
+		RegionTask(FileChannel in, FileChannel out, long size, long fromRegion, long toRegion) {
+			this.in = in;
+			this.out = out;
+			this.size = size;
+			this.fromRegion = fromRegion;
+			this.toRegion = toRegion;
+		}
+
+		@Override
+		protected void compute() {
+			if (toRegion - fromRegion > 1) {
+				long mid = (fromRegion + toRegion) >>> 1;
+				invokeAll(
+						new RegionTask(in, out, size, fromRegion, mid),
+						new RegionTask(in, out, size, mid, toRegion));
+				return;
+			}
+
+			final long offset = fromRegion * regionSize;
+			final long length = Math.min(regionSize, size - offset);
+
+			try {
+				MappedByteBuffer src = in.map(MapMode.READ_ONLY, offset, length);
+				MappedByteBuffer dst = out.map(MapMode.READ_WRITE, offset, length);
+
+				CompiledEnigma cursor = engine.duplicate();
+				cursor.seek(offset);
+				cursor.encrypt(src, dst);
+
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Runs the file encryption or decryption from the command line.
+	 *
+	 * <pre>
+	 * encrypt|decrypt &lt;input&gt; &lt;output&gt; [--rotors "V I IV"] [--reflector B]
+	 *     [--plugboard "SZ GT DV"] [--rings "A A A"] [--positions "A A A"]
+	 * </pre>
+	 *
+	 * @param args command line arguments
+	 * @throws IOException if reading or writing the files fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3 || args.length % 2 == 0)
+			throw new IllegalArgumentException("usage: encrypt|decrypt <input> <output> "
+					+ "[--rotors \"V I IV\"] [--reflector B] [--plugboard \"SZ GT DV\"] [--rings \"A A A\"] [--positions \"A A A\"]");
+
+		EnigmaMachine enigma = new EnigmaMachine();
+		for (int i = 3; i < args.length; i += 2) {
+			switch (args[i]) {
+			case "--rotors":
+				enigma.setRotors(args[i + 1]);
+				break;
+			case "--reflector":
+				enigma.setReflector(args[i + 1]);
+				break;
+			case "--plugboard":
+				enigma.setPlugboard(args[i + 1]);
+				break;
+			case "--rings":
+				enigma.setRingSettings(args[i + 1]);
+				break;
+			case "--positions":
+				enigma.setInitialPositions(args[i + 1]);
+				break;
+			default:
+				throw new IllegalArgumentException("invalid option " + args[i]);
+			}
+		}
+
+		FileEnigma files = new FileEnigma(enigma);
+		Path input = Paths.get(args[1]);
+		Path output = Paths.get(args[2]);
+
+		long start = System.nanoTime();
+		long bytes;
+		switch (args[0]) {
+		case "encrypt":
+			bytes = files.encrypt(input, output);
+			break;
+		case "decrypt":
+			bytes = files.decrypt(input, output);
+			break;
+		default:
+			throw new IllegalArgumentException("invalid command " + args[0]);
+		}
+		long nanos = System.nanoTime() - start;
+
+		System.out.printf("%s %d bytes in %.1f ms (%.1f MB/s)%n",
+				args[0],
+				bytes,
+				nanos / 1e6,
+				bytes / 1e6 / Math.max(nanos / 1e9, 1e-9));
+	}
+
+	private final CompiledEnigma engine;
+	private final ForkJoinPool pool;
+	private final int regionSize;
+
+	/**
+	 * Creates a file engine for the machine's current configuration and initial
+	 * positions, running on the common pool.
+	 *
+	 * @param machine the machine holding the key
+	 * @throws IllegalArgumentException if the machine's input policy is not
+	 *                                  {@link InputPolicy#REJECT}
+	 */
+	public FileEnigma(EnigmaMachine machine) {
+		this(machine.compile(), ForkJoinPool.commonPool(), DEFAULT_REGION_SIZE);
+	}
+
+	/**
+	 * Creates a file engine for a compiled engine's key and initial positions.
+	 *
+	 * @param engine     the compiled engine holding the key, its table is shared
+	 * @param pool       the pool processing the regions
+	 * @param regionSize the number of bytes mapped and processed by one task
+	 * @throws IllegalArgumentException if the region size is not positive or
+	 *                                  the engine's input policy is not
+	 *                                  {@link InputPolicy#REJECT}
+	 */
+	public FileEnigma(CompiledEnigma engine, ForkJoinPool pool, int regionSize) {
+		if (regionSize <= 0)
+			throw new IllegalArgumentException("region size must be positive " + regionSize);
+
+		if (engine.getInputPolicy() != InputPolicy.REJECT)
+			throw new IllegalArgumentException("file encryption requires the REJECT input policy "
+					+ engine.getInputPolicy());
+
+		this.engine = engine.duplicate();
+		this.engine.partial = true;
+		this.pool = Objects.requireNonNull(pool, "pool");
+		this.regionSize = regionSize;
+	}
+
+	/**
+	 * Applies the encryption or decryption process from the input file into the
+	 * output file. The output file is created or replaced, and left untouched on
+	 * failure.
+	 *
+	 * @param input  the input file
+	 * @param output the output file
+	 * @return the number of bytes processed
+	 * @throws IOException              if reading or writing the files fails
+	 * @throws IllegalArgumentException if the output is the input file, or the
+	 *                                  input can not be processed
+	 */
+	private long apply(Path input, Path output) throws IOException {
+		if (Files.exists(output) && Files.isSameFile(input, output))
+			throw new IllegalArgumentException("output would overwrite the input");
+
+		final Path dir = output.toAbsolutePath().getParent();
+		final Path tmp = Files.createTempFile(dir, output.getFileName().toString(), ".tmp");
+		try {
+			final long size;
+			try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+					FileChannel out = FileChannel.open(tmp,
+							StandardOpenOption.READ,
+							StandardOpenOption.WRITE)) {
+
+				size = in.size();
+				if (size > 0) {
+					/* Size the output once so regions can be mapped independently */
+					out.write(ByteBuffer.wrap(new byte[1]), size - 1);
+
+					final long regions = (size + regionSize - 1) / regionSize;
+					pool.invoke(new RegionTask(in, out, size, 0, regions));
+				}
+			}
+
+			Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			EnigmaMetrics.message();
+
+			return size;
+
+		} catch (RuntimeException e) {
+			/* The pool rethrows a task's exception wrapped in a copy of itself */
+			Throwable cause = e;
+			while (cause.getCause() != null && cause.getCause().getClass() == cause.getClass())
+				cause = cause.getCause();
+
+			if (cause instanceof UncheckedIOException)
+				throw ((UncheckedIOException) cause).getCause();
+
+			throw (RuntimeException) cause;
+
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Decrypts the input file into the output file. The output file is created
+	 * or replaced.
+	 *
+	 * @param input  the file holding the cypher text
+	 * @param output the file receiving the clear text
+	 * @return the number of bytes decrypted
+	 * @throws IOException              if reading or writing the files fails
+	 * @throws IllegalArgumentException if the output is the input file, or the
+	 *                                  input is not escaped text
+	 */
+	public long decrypt(Path input, Path output) throws IOException {
+		return apply(input, output);
+	}
+
+	/**
+	 * Encrypts the input file into the output file. The output file is created
+	 * or replaced.
+	 *
+	 * @param input  the file holding the escaped clear text
+	 * @param output the file receiving the cypher text
+	 * @return the number of bytes encrypted
+	 * @throws IOException              if reading or writing the files fails
+	 * @throws IllegalArgumentException if the output is the input file, or the
+	 *                                  input is not escaped text
+	 */
+	public long encrypt(Path input, Path output) throws IOException {
+		return apply(input, output);
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+/**
+ * What the machine does with input characters other than the upper case
+ * letters {@code A} to {@code Z}, see
+ * {@link EnigmaMachine#setInputPolicy(InputPolicy)} and
+ * {@link CompiledEnigma#setInputPolicy(InputPolicy)}.
+ *
+ * <p>
+ * Each policy is a 256 entry table classifying every Latin-1 character as a
+ * letter index, or as a character to pass through, skip or reject. The
+ * encryption loops read one table entry per character and branch only on the
+ * rare non letter, so checked input is processed at the speed of unchecked
+ * input. Characters above 255 are classified as any other non letter.
+ * </p>
+ *
+ * <p>
+ * Only enciphered characters step the rotors. With {@link #SKIP} and
+ * {@link #FOLD} the output can be shorter than the input; the in-place array
+ * methods return the number of characters written to the front of the range.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public enum InputPolicy {
+
+	/**
+	 * Rejects any character other than {@code A} to {@code Z} with an
+	 * {@link IllegalArgumentException}. The characters before it have been
+	 * processed. This is the default.
+	 */
+	REJECT(InputPolicy.REJECTED, InputPolicy.REJECTED),
+
+	/**
+	 * Copies any character other than {@code A} to {@code Z} to the output
+	 * unchanged, for example the spaces of a message written in groups.
+	 */
+	PASS_THROUGH(InputPolicy.PASSED, InputPolicy.PASSED),
+
+	/**
+	 * Drops any character other than {@code A} to {@code Z} from the output.
+	 */
+	SKIP(InputPolicy.SKIPPED, InputPolicy.SKIPPED),
+
+	/**
+	 * Upper cases the letters {@code a} to {@code z} and enciphers them, and
+	 * drops every other character, the way clear text was prepared for the
+	 * historical machine.
+	 */
+	FOLD(InputPolicy.FOLDED, InputPolicy.SKIPPED),
+
+	;
+
+	/** The number of characters classified by the table */
+	static final int CLASSES = 256;
+
+	/** Class of a character copied to the output unchanged */
+	static final byte PASSED = -1;
+
+	/** Class of a character dropped from the output */
+	static final byte SKIPPED = -2;
+
+	/** Class of a character rejected with an exception */
+	static final byte REJECTED = -3;
+
+	/** Constructor marker for lower case letters classified as their letter */
+	private static final byte FOLDED = 0;
+
+	/**
+	 * Creates the exception for a rejected character.
+	 *
+	 * @param ch     the character
+	 * @param offset the offset of the character in the input
+	 * @return the exception to throw
+	 */
+	static IllegalArgumentException rejected(int ch, int offset) {
+		return new IllegalArgumentException(String.format("character 0x%02X at offset %d can not be enciphered",
+				ch, offset));
+	}
+
+	/** The letter index, 0 to 25, or class of each character below 256 */
+	final byte[] classes = new byte[CLASSES];
+
+	/** The class of the characters above 255 */
+	final byte other;
+
+	InputPolicy(byte lowerCase, byte other) {
+		this.other = other;
+
+		for (int ch = 0; ch < CLASSES; ch++) {
+			if (ch >= 'A' && ch <= 'Z')
+				classes[ch] = (byte) (ch - 'A');
+			else if (ch >= 'a' && ch <= 'z')
+				classes[ch] = (lowerCase == FOLDED) ? (byte) (ch - 'a') : lowerCase;
+			else
+				classes[ch] = other;
+		}
+	}
+
+	/**
+	 * Classifies a character.
+	 *
+	 * @param ch the character
+	 * @return the letter index, 0 to 25, or {@link #PASSED}, {@link #SKIPPED} or
+	 *         {@link #REJECTED}
+	 */
+	int classify(int ch) {
+		return (ch < CLASSES) ? classes[ch] : other;
+	}
+}
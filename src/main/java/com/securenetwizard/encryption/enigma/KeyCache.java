@@ -0,0 +1,214 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded least recently used cache of compiled {@link EnigmaKey}s, keyed by
+ * the settings of a {@link KeySheet.Entry}: rotor order, reflector, ring
+ * settings and plugboard. A key's tables are compiled on its first use and
+ * shared by every later message under the same settings, which then only pays
+ * for a hash lookup and a new cursor.
+ *
+ * <p>
+ * The cache is bounded by a number of keys, a number of table bytes, or both.
+ * Each compiled key holds {@value #KEY_BYTES} bytes of tables. When either
+ * bound is exceeded the least recently used keys are evicted. Hits, misses and
+ * evictions are counted from the creation of the cache.
+ * </p>
+ *
+ * <p>
+ * The cache is safe to share between threads. Keys are compiled outside the
+ * lock, so a slow compilation does not block lookups of other keys; two threads
+ * missing on the same settings at once may both compile them, and the first to
+ * finish wins.
+ * </p>
+ *
+ * <pre>
+ * KeyCache cache = new KeyCache(KeyCache.UNLIMITED, 64L * 1024 * 1024);
+ * CompiledEnigma cursor = cache.get(sheet.get("31")).newCursor("QEV");
+ * System.out.println(cache);
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class KeyCache {
+
+	/**
+	 * No bound on the number of keys or bytes.
+	 */
+	public static final long UNLIMITED = Long.MAX_VALUE;
+
+	/**
+	 * The table bytes held by one compiled key.
+	 */
+	public static final int KEY_BYTES = CompiledEnigma.POSITIONS * Rotor.ROTOR_POSITIONS;
+
+	private final long maxEntries;
+	private final long maxBytes;
+
+	/** Guarded by this, in access order */
+	private final LinkedHashMap<KeySheet.Entry, EnigmaKey> keys = new LinkedHashMap<>(16, 0.75f, true);
+	private long bytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param maxEntries the maximum number of keys, or {@link #UNLIMITED}
+	 * @param maxBytes   the maximum number of table bytes, or
+	 *                   {@link #UNLIMITED}
+	 * @throws IllegalArgumentException if a bound is less than one key
+	 */
+	public KeyCache(long maxEntries, long maxBytes) {
+		if (maxEntries < 1)
+			throw new IllegalArgumentException("maxEntries must be at least 1 " + maxEntries);
+		if (maxBytes < KEY_BYTES)
+			throw new IllegalArgumentException("maxBytes must hold at least one key of "
+					+ KEY_BYTES + " bytes " + maxBytes);
+
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Removes every key. The counters are kept.
+	 */
+	public synchronized void clear() {
+		keys.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Evicts least recently used keys until both bounds are met. Called with the
+	 * lock held.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<KeySheet.Entry, EnigmaKey>> it = keys.entrySet().iterator();
+		while ((keys.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+			bytes -= it.next().getValue().table().length;
+			it.remove();
+			evictions++;
+			EnigmaMetrics.cacheEviction();
+		}
+	}
+
+	/**
+	 * Gets the compiled key for an entry's settings, compiling it on a miss.
+	 *
+	 * @param entry the key sheet entry
+	 * @return the compiled key
+	 */
+	public EnigmaKey get(KeySheet.Entry entry) {
+		Objects.requireNonNull(entry, "entry");
+
+		synchronized (this) {
+			EnigmaKey key = keys.get(entry);
+			if (key != null) {
+				hits++;
+				EnigmaMetrics.cacheHit();
+				return key;
+			}
+
+			misses++;
+			EnigmaMetrics.cacheMiss();
+		}
+
+		final EnigmaKey compiled = entry.toMachine().toKey();
+
+		synchronized (this) {
+			EnigmaKey key = keys.putIfAbsent(entry, compiled);
+			if (key != null)
+				return key;
+
+			bytes += compiled.table().length;
+			evict();
+
+			return compiled;
+		}
+	}
+
+	/**
+	 * Gets the number of table bytes held.
+	 *
+	 * @return the bytes held
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Gets the number of keys evicted to meet the bounds.
+	 *
+	 * @return the evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Gets the number of lookups that found a compiled key.
+	 *
+	 * @return the hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of lookups that compiled a key.
+	 *
+	 * @return the misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gets the number of keys held.
+	 *
+	 * @return the number of keys
+	 */
+	public synchronized int size() {
+		return keys.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "KeyCache ["
+				+ "size=" + keys.size()
+				+ ", bytes=" + bytes
+				+ ", hits=" + hits
+				+ ", misses=" + misses
+				+ ", evictions=" + evictions
+				+ "]";
+	}
+}
@@ -0,0 +1,385 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A key sheet, the list of daily keys of a net, parsed once into ready to use
+ * settings. Each line of a key sheet holds one day's key as fields separated
+ * by semicolons:
+ *
+ * <pre>
+ * # day ; rotors   ; reflector ; rings    ; plugboard
+ * 31    ; I V III  ; B         ; 01 01 01 ; SZ GT DV KU FO MY EW JN IX LQ
+ * 30    ; IV II I  ; C         ; A A A    ; AB CD
+ * </pre>
+ *
+ * <p>
+ * The ring settings are letters or the numbers 01 to 26, and may be left empty
+ * for AAA. The plugboard may be left empty for no pairs. Blank lines and lines
+ * starting with {@code #} are ignored.
+ * </p>
+ *
+ * <p>
+ * The settings of an entry are the cache key of the compiled tables in a
+ * {@link KeyCache}: two entries with the same rotors, reflector, ring settings
+ * and plugboard pairs, in any order, are equal.
+ * </p>
+ *
+ * <pre>
+ * KeySheet sheet = KeySheet.load(Paths.get("net.keys"));
+ * KeyCache cache = new KeyCache(64, KeyCache.UNLIMITED);
+ *
+ * CompiledEnigma cursor = cache.get(sheet.get("31")).newCursor("QEV");
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class KeySheet {
+
+	/**
+	 * One day's key.
+	 */
+	public static final class Entry {
+
+		private final String day;
+		private final int[] rotors;
+		private final int reflector;
+		private final int[] rings;
+		private final int[] plugboard;
+		private final int hashCode;
+
+		Entry(String day, int[] rotors, int reflector, int[] rings, int[] plugboard) {
+			this.day = day;
+			this.rotors = rotors;
+			this.reflector = reflector;
+			this.rings = rings;
+			this.plugboard = plugboard;
+			this.hashCode = Objects.hash(Arrays.hashCode(rotors), reflector, Arrays.hashCode(rings),
+					Arrays.hashCode(plugboard));
+		}
+
+		/**
+		 * Compares the settings of two entries, ignoring the day.
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Entry))
+				return false;
+
+			Entry other = (Entry) obj;
+
+			return hashCode == other.hashCode
+					&& reflector == other.reflector
+					&& Arrays.equals(rotors, other.rotors)
+					&& Arrays.equals(rings, other.rings)
+					&& Arrays.equals(plugboard, other.plugboard);
+		}
+
+		/**
+		 * Gets the day, the first field of the entry's line.
+		 *
+		 * @return the day
+		 */
+		public String getDay() {
+			return day;
+		}
+
+		/**
+		 * Gets the plugboard pairs, for {@link EnigmaMachine#setPlugboard(String)}.
+		 *
+		 * @return the plugboard pairs in alphabetical order, empty if no letters
+		 *         are steckered
+		 */
+		public String getPlugboard() {
+			StringBuilder b = new StringBuilder();
+			for (int a = 0; a < plugboard.length; a++) {
+				if (plugboard[a] > a) {
+					if (b.length() > 0)
+						b.append(' ');
+					b.append((char) ('A' + a)).append((char) ('A' + plugboard[a]));
+				}
+			}
+
+			return b.toString();
+		}
+
+		/**
+		 * Gets the reflector index, see {@link Reflector#REFLECTORS}.
+		 *
+		 * @return the reflector index
+		 */
+		public int getReflector() {
+			return reflector;
+		}
+
+		/**
+		 * Gets the ring settings, 0 for A.
+		 *
+		 * @return the ring setting of each rotor
+		 */
+		public int[] getRingSettings() {
+			return rings.clone();
+		}
+
+		/**
+		 * Gets the rotor numbers, for {@link EnigmaMachine#setRotors(int...)}.
+		 *
+		 * @return the rotor numbers
+		 */
+		public int[] getRotors() {
+			return rotors.clone();
+		}
+
+		/**
+		 * Hashes the settings, ignoring the day.
+		 */
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		/**
+		 * Creates a machine set up with this entry's settings, at rotor positions
+		 * AAA.
+		 *
+		 * @return a new machine
+		 */
+		public EnigmaMachine toMachine() {
+			EnigmaMachine machine = new EnigmaMachine();
+			machine.setRotors(rotors);
+			machine.setRingSettings(rings);
+			machine.setReflector(Reflector.REFLECTOR_NAMES[reflector]);
+			machine.setPlugboard(plugboard);
+
+			return machine;
+		}
+
+		@Override
+		public String toString() {
+			return "Entry ["
+					+ "day=" + day
+					+ ", rotors=" + Rotor.ROTOR_NAMES[rotors[0]] + " " + Rotor.ROTOR_NAMES[rotors[1]] + " "
+					+ Rotor.ROTOR_NAMES[rotors[2]]
+					+ ", reflector=" + Reflector.REFLECTOR_NAMES[reflector]
+					+ ", rings=" + (char) ('A' + rings[0]) + (char) ('A' + rings[1]) + (char) ('A' + rings[2])
+					+ ", plugboard=" + getPlugboard()
+					+ "]";
+		}
+	}
+
+	private static final int FIELDS = 5;
+
+	/**
+	 * Loads a key sheet from a UTF-8 file.
+	 *
+	 * @param path the key sheet file
+	 * @return the key sheet
+	 * @throws IOException              if the file can not be read
+	 * @throws IllegalArgumentException if a line is not a valid key
+	 */
+	public static KeySheet load(Path path) throws IOException {
+		try (Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			return parse(in);
+		}
+	}
+
+	/**
+	 * Parses a key sheet.
+	 *
+	 * @param in the key sheet text
+	 * @return the key sheet
+	 * @throws IOException              if the text can not be read
+	 * @throws IllegalArgumentException if a line is not a valid key
+	 */
+	public static KeySheet parse(Reader in) throws IOException {
+		final BufferedReader lines = (in instanceof BufferedReader) ? (BufferedReader) in : new BufferedReader(in);
+		final Map<String, Entry> entries = new LinkedHashMap<>();
+
+		String line;
+		for (int number = 1; (line = lines.readLine()) != null; number++) {
+			line = line.strip();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+
+			try {
+				Entry entry = parseEntry(line);
+				if (entries.putIfAbsent(entry.getDay(), entry) != null)
+					throw new IllegalArgumentException("duplicate day " + entry.getDay());
+
+			} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+				throw new IllegalArgumentException("invalid key sheet line " + number + ": " + e.getMessage(), e);
+			}
+		}
+
+		return new KeySheet(entries);
+	}
+
+	/**
+	 * Parses a key sheet held in a string.
+	 *
+	 * @param sheet the key sheet text
+	 * @return the key sheet
+	 * @throws IllegalArgumentException if a line is not a valid key
+	 */
+	public static KeySheet parse(String sheet) {
+		try {
+			return parse(new StringReader(sheet));
+
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Parses one key sheet line.
+	 *
+	 * @param line the line
+	 * @return the entry
+	 */
+	private static Entry parseEntry(String line) {
+		final String[] fields = new String[FIELDS];
+		int start = 0;
+		for (int i = 0; i < FIELDS; i++) {
+			int end = (i < FIELDS - 1) ? line.indexOf(';', start) : line.length();
+			if (end < 0)
+				throw new IllegalArgumentException("expected " + FIELDS + " fields separated by ';'");
+
+			fields[i] = line.substring(start, end).strip();
+			start = end + 1;
+		}
+
+		if (fields[0].isEmpty())
+			throw new IllegalArgumentException("missing day");
+		if (fields[FIELDS - 1].indexOf(';') >= 0)
+			throw new IllegalArgumentException("expected " + FIELDS + " fields separated by ';'");
+
+		final int[] rotors = Rotor.parseRotorsString(fields[1].replaceAll("\\s+", " "));
+		final int reflector = Reflector.parseReflectorString(fields[2].toUpperCase());
+		final int[] rings = parseRingSettings(fields[3]);
+
+		final int[] plugboard = new int[Plugboard.SWITCH_POSITIONS];
+		for (int i = 0; i < plugboard.length; i++)
+			plugboard[i] = i;
+		for (int[] pair : Plugboard.parsePlugboardPairs(fields[4])) {
+			if (plugboard[pair[0]] != pair[0] || plugboard[pair[1]] != pair[1] || pair[0] == pair[1])
+				throw new IllegalArgumentException("letter plugged twice " + fields[4]);
+
+			plugboard[pair[0]] = pair[1];
+			plugboard[pair[1]] = pair[0];
+		}
+
+		return new Entry(fields[0], rotors, reflector, rings, plugboard);
+	}
+
+	/**
+	 * Parses ring settings, as 3 letters or 3 numbers from 01 to 26.
+	 *
+	 * @param rings the ring settings, empty for AAA
+	 * @return the ring setting of each rotor, 0 for A
+	 */
+	private static int[] parseRingSettings(String rings) {
+		if (rings.isEmpty())
+			return new int[3];
+
+		final String[] tokens = rings.split("\\s+");
+		final int[] settings;
+
+		if (tokens.length == 3 && Character.isDigit(tokens[0].charAt(0))) {
+			settings = new int[3];
+			for (int i = 0; i < 3; i++)
+				settings[i] = Integer.parseInt(tokens[i]) - 1;
+
+		} else {
+			settings = Rotor.parseDialString(rings);
+		}
+
+		for (int setting : settings)
+			if (setting < 0 || setting >= Rotor.ROTOR_POSITIONS)
+				throw new IllegalArgumentException("invalid ring settings " + rings);
+
+		return settings;
+	}
+
+	private final Map<String, Entry> entries;
+
+	/**
+	 * Constructs a key sheet over parsed entries.
+	 *
+	 * @param entries the entries by day, in sheet order
+	 */
+	private KeySheet(Map<String, Entry> entries) {
+		this.entries = Collections.unmodifiableMap(entries);
+	}
+
+	/**
+	 * Gets the entries, in sheet order.
+	 *
+	 * @return the entries
+	 */
+	public List<Entry> entries() {
+		return new ArrayList<>(entries.values());
+	}
+
+	/**
+	 * Gets one day's key.
+	 *
+	 * @param day the day, as in the first field of the sheet
+	 * @return the entry
+	 * @throws IllegalArgumentException if the sheet has no key for the day
+	 */
+	public Entry get(String day) {
+		Entry entry = entries.get(day);
+		if (entry == null)
+			throw new IllegalArgumentException("no key for day " + day);
+
+		return entry;
+	}
+
+	/**
+	 * Gets the number of keys in the sheet.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return entries.size();
+	}
+}
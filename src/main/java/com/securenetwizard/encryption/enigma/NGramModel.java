@@ -0,0 +1,269 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * N-gram language model over the 26 letters produced by
+ * {@link EnigmaMachine#escape(String)}. The log10 probability of every n-gram
+ * is stored in one flat array indexed by base-26 packing, so
+ * {@code "ABC"} is at {@code (0 * 26 + 1) * 26 + 2}. Scoring keeps a rolling
+ * index over the text, so each letter costs one array read.
+ *
+ * <p>
+ * A trained model can be written to a compact binary file and loaded back with
+ * {@link #load(Path)}, which memory maps the table rather than reading it. All
+ * processes loading the same file share one page-cached copy, and loading
+ * costs no parsing. The file is a 16 byte header, the magic {@code "NGRM"}, a
+ * format version, the order and the number of entries, followed by the
+ * entries as little-endian floats.
+ * </p>
+ *
+ * <pre>
+ * NGramModel trigrams = NGramModel.train(EnigmaMachine.escape(corpus), 3);
+ * trigrams.write(Paths.get("english3.ngram"));
+ *
+ * NGramModel loaded = NGramModel.load(Paths.get("english3.ngram"));
+ * double score = loaded.score(letters, len);
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class NGramModel implements TextScorer {
+
+	/**
+	 * The smallest supported n-gram length, bigrams.
+	 */
+	public static final int MIN_ORDER = 2;
+
+	/**
+	 * The largest supported n-gram length, quadgrams.
+	 */
+	public static final int MAX_ORDER = 4;
+
+	private static final int N = Rotor.ROTOR_POSITIONS;
+
+	/** File magic, "NGRM" */
+	private static final int MAGIC = 0x4E47524D;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+
+	/**
+	 * Loads a model written by {@link #write(Path)}. The table is memory mapped
+	 * read-only and stays mapped while the model is reachable.
+	 *
+	 * @param path the model file
+	 * @return the loaded model
+	 * @throws IOException              if the file can not be read
+	 * @throws IllegalArgumentException if the file is not a valid model
+	 */
+	public static NGramModel load(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE)
+				throw new IllegalArgumentException("not an n-gram model file " + path);
+
+			MappedByteBuffer map = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			map.order(ByteOrder.LITTLE_ENDIAN);
+
+			if (map.getInt(0) != MAGIC)
+				throw new IllegalArgumentException("not an n-gram model file " + path);
+			if (map.getInt(4) != VERSION)
+				throw new IllegalArgumentException("unsupported n-gram model version " + map.getInt(4));
+
+			final int order = map.getInt(8);
+			final int size = size(order);
+			if (map.getInt(12) != size || channel.size() != HEADER_SIZE + (long) size * Float.BYTES)
+				throw new IllegalArgumentException("truncated n-gram model file " + path);
+
+			FloatBuffer table = map.position(HEADER_SIZE).slice()
+					.order(ByteOrder.LITTLE_ENDIAN)
+					.asFloatBuffer();
+
+			return new NGramModel(order, table);
+		}
+	}
+
+	/**
+	 * Trains a model from a corpus. Upper and lower case letters are counted,
+	 * every other character is skipped.
+	 *
+	 * @param corpus the training text
+	 * @param order  the n-gram length, 2 to 4
+	 * @return the trained model
+	 */
+	public static NGramModel train(CharSequence corpus, int order) {
+		final int size = size(order);
+		final long[] counts = new long[size];
+		long total = 0;
+
+		int index = 0;
+		int run = 0;
+		for (int i = 0; i < corpus.length(); i++) {
+			final char ch = Character.toUpperCase(corpus.charAt(i));
+			if (ch < 'A' || ch > 'Z')
+				continue;
+
+			index = (index * N + (ch - 'A')) % size;
+			if (++run >= order) {
+				counts[index]++;
+				total++;
+			}
+		}
+
+		if (total == 0)
+			throw new IllegalArgumentException("corpus has no " + order + "-grams");
+
+		/* Unseen n-grams get a probability well below any observed one */
+		final float floor = (float) Math.log10(0.01 / total);
+		final float[] logProbabilities = new float[size];
+		for (int i = 0; i < size; i++)
+			logProbabilities[i] = (counts[i] == 0) ? floor : (float) Math.log10((double) counts[i] / total);
+
+		return new NGramModel(order, FloatBuffer.wrap(logProbabilities));
+	}
+
+	/**
+	 * Computes the number of entries of a model.
+	 *
+	 * @param order the n-gram length, 2 to 4
+	 * @return 26 to the power of {@code order}
+	 */
+	static int size(int order) {
+		if (order < MIN_ORDER || order > MAX_ORDER)
+			throw new IllegalArgumentException("n-gram order must be between "
+					+ MIN_ORDER + " and " + MAX_ORDER + " " + order);
+
+		int size = 1;
+		for (int i = 0; i < order; i++)
+			size *= N;
+
+		return size;
+	}
+
+	private final int order;
+	private final int size;
+	private final FloatBuffer logProbabilities;
+
+	/**
+	 * Constructs a model over a table of log10 probabilities, on the heap or
+	 * memory mapped.
+	 *
+	 * @param order            the n-gram length
+	 * @param logProbabilities the log10 probability of each n-gram, base-26
+	 *                         packed
+	 */
+	NGramModel(int order, FloatBuffer logProbabilities) {
+		this.order = order;
+		this.size = size(order);
+		this.logProbabilities = logProbabilities;
+
+		if (logProbabilities.capacity() != size)
+			throw new IllegalArgumentException("expected " + size + " entries " + logProbabilities.capacity());
+	}
+
+	/**
+	 * Gets the n-gram length of this model.
+	 *
+	 * @return the n-gram length
+	 */
+	public int getOrder() {
+		return order;
+	}
+
+	/**
+	 * Gets the log10 probability of an n-gram.
+	 *
+	 * @param ngram the n-gram, {@link #getOrder()} letters A to Z
+	 * @return the log10 probability
+	 */
+	public float logProbability(CharSequence ngram) {
+		if (ngram.length() != order)
+			throw new IllegalArgumentException("expected a " + order + "-gram " + ngram);
+
+		int index = 0;
+		for (int i = 0; i < order; i++)
+			index = index * N + (ngram.charAt(i) - 'A');
+
+		return logProbabilities.get(index);
+	}
+
+	/**
+	 * Scores a text as the sum of the log10 probabilities of its n-grams.
+	 *
+	 * @param letters the text as letter indexes, 0 for A to 25 for Z
+	 * @param len     the number of letters to score
+	 * @return the log10 probability of the text, higher is better
+	 */
+	@Override
+	public double score(byte[] letters, int len) {
+		int index = 0;
+		for (int i = 0; i < order - 1 && i < len; i++)
+			index = index * N + letters[i];
+
+		double score = 0;
+		for (int i = order - 1; i < len; i++) {
+			index = (index * N + letters[i]) % size;
+			score += logProbabilities.get(index);
+		}
+
+		return score;
+	}
+
+	/**
+	 * Writes the model in the binary format read by {@link #load(Path)}.
+	 *
+	 * @param path the model file, created or replaced
+	 * @throws IOException if the file can not be written
+	 */
+	public void write(Path path) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + size * Float.BYTES)
+				.order(ByteOrder.LITTLE_ENDIAN)
+				.putInt(MAGIC)
+				.putInt(VERSION)
+				.putInt(order)
+				.putInt(size);
+
+		for (int i = 0; i < size; i++)
+			buf.putFloat(logProbabilities.get(i));
+		buf.flip();
+
+		try (FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			while (buf.hasRemaining())
+				channel.write(buf);
+		}
+	}
+}
@@ -0,0 +1,285 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel encryption and decryption of large texts. The input is split into
+ * chunks, the rotor positions at the start of each chunk are computed with
+ * {@link CompiledEnigma#seek(long)}, and the chunks are processed concurrently
+ * on a {@link ForkJoinPool}. The output is identical to the sequential
+ * {@code encrypt} and {@code decrypt} of the machine the engine was created
+ * from, starting at its initial positions.
+ *
+ * <p>
+ * Each chunk seeks to its own offset, which only matches the sequential
+ * output when every character steps the rotors, so the key's input policy
+ * must be {@link InputPolicy#REJECT}.
+ * </p>
+ *
+ * <p>
+ * Instances only hold the compiled key and are safe to share between threads.
+ * </p>
+ *
+ * <pre>
+ * EnigmaMachine enigma = new EnigmaMachine();
+ * enigma.setRotors("V I IV");
+ * enigma.setPlugboard("SZ GT DV KU FO MY EW JN IX LQ");
+ * enigma.setInitialPositions("A B C");
+ *
+ * ParallelEnigma parallel = new ParallelEnigma(enigma);
+ * String cypher = parallel.encrypt(hugeEscapedText);
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class ParallelEnigma {
+
+	/**
+	 * The default number of characters processed by a single task.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * Processes a byte range, splitting it in half until it fits in a chunk.
+	 */
+	private class ByteTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final byte[] buf;
+		private final int off;
+		private final int len;
+		private final long offset;
+
+		ByteTask(byte[] buf, int off, int len, long offset) {
+			this.buf = buf;
+			this.off = off;
+			this.len = len;
+			this.offset = offset;
+		}
+
+		@Override
+		protected void compute() {
+			if (len <= chunkSize) {
+				CompiledEnigma cursor = engine.duplicate();
+				cursor.seek(offset);
+				cursor.encrypt(buf, off, len);
+				return;
+			}
+
+			int half = len >>> 1;
+			invokeAll(
+					new ByteTask(buf, off, half, offset),
+					new ByteTask(buf, off + half, len - half, offset + half));
+		}
+	}
+
+	/**
+	 * Processes a char range, splitting it in half until it fits in a chunk.
+	 */
+	private class CharTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final char[] buf;
+		private final int off;
+		private final int len;
+		private final long offset;
+
+		CharTask(char[] buf, int off, int len, long offset) {
+			this.buf = buf;
+			this.off = off;
+			this.len = len;
+			this.offset = offset;
+		}
+
+		@Override
+		protected void compute() {
+			if (len <= chunkSize) {
+				CompiledEnigma cursor = engine.duplicate();
+				cursor.seek(offset);
+				cursor.encrypt(buf, off, len);
+				return;
+			}
+
+			int half = len >>> 1;
+			invokeAll(
+					new CharTask(buf, off, half, offset),
+					new CharTask(buf, off + half, len - half, offset + half));
+		}
+	}
+
+	private final CompiledEnigma engine;
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+
+	/**
+	 * Creates a parallel engine for the machine's current configuration and
+	 * initial positions, running on the common pool.
+	 *
+	 * @param machine the machine holding the key
+	 * @throws IllegalArgumentException if the machine's input policy is not
+	 *                                  {@link InputPolicy#REJECT}
+	 */
+	public ParallelEnigma(EnigmaMachine machine) {
+		this(machine.compile(), ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a parallel engine for a compiled engine's key and initial
+	 * positions.
+	 *
+	 * @param engine    the compiled engine holding the key, its table is shared
+	 * @param pool      the pool running the chunk tasks
+	 * @param chunkSize the maximum number of characters processed by one task
+	 * @throws IllegalArgumentException if the chunk size is not positive or the
+	 *                                  engine's input policy is not
+	 *                                  {@link InputPolicy#REJECT}
+	 */
+	public ParallelEnigma(CompiledEnigma engine, ForkJoinPool pool, int chunkSize) {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("chunk size must be positive " + chunkSize);
+
+		if (engine.getInputPolicy() != InputPolicy.REJECT)
+			throw new IllegalArgumentException("parallel encryption requires the REJECT input policy "
+					+ engine.getInputPolicy());
+
+		this.engine = engine.duplicate();
+		this.engine.partial = true;
+		this.pool = Objects.requireNonNull(pool, "pool");
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Applies the encryption or decryption process to a message in place, in
+	 * parallel.
+	 *
+	 * @param buf the buffer holding the message
+	 * @param off the offset of the first letter
+	 * @param len the number of letters to process
+	 */
+	private void apply(byte[] buf, int off, int len) {
+		Objects.checkFromIndexSize(off, len, buf.length);
+
+		pool.invoke(new ByteTask(buf, off, len, 0));
+		EnigmaMetrics.message();
+	}
+
+	/**
+	 * Applies the encryption or decryption process to a message in place, in
+	 * parallel.
+	 *
+	 * @param buf the buffer holding the message
+	 * @param off the offset of the first letter
+	 * @param len the number of letters to process
+	 */
+	private void apply(char[] buf, int off, int len) {
+		Objects.checkFromIndexSize(off, len, buf.length);
+
+		pool.invoke(new CharTask(buf, off, len, 0));
+		EnigmaMetrics.message();
+	}
+
+	/**
+	 * Applies the encryption or decryption process to the input text in parallel.
+	 *
+	 * @param text the input text to be processed
+	 * @return the processed text
+	 */
+	private String apply(String text) {
+		char[] b = text.toCharArray();
+		apply(b, 0, b.length);
+
+		return new String(b);
+	}
+
+	/**
+	 * Decrypts US-ASCII cypher text in place, in parallel.
+	 *
+	 * @param buf the buffer holding the cypher text
+	 * @param off the offset of the first letter
+	 * @param len the number of letters to decrypt
+	 */
+	public void decrypt(byte[] buf, int off, int len) {
+		apply(buf, off, len);
+	}
+
+	/**
+	 * Decrypts cypher text in place, in parallel.
+	 *
+	 * @param buf the buffer holding the cypher text
+	 * @param off the offset of the first letter
+	 * @param len the number of letters to decrypt
+	 */
+	public void decrypt(char[] buf, int off, int len) {
+		apply(buf, off, len);
+	}
+
+	/**
+	 * Decrypts the input cypher text in parallel.
+	 *
+	 * @param cypherText the input cypher text to be decrypted
+	 * @return the decrypted text
+	 */
+	public String decrypt(String cypherText) {
+		return apply(cypherText);
+	}
+
+	/**
+	 * Encrypts US-ASCII clear text in place, in parallel.
+	 *
+	 * @param buf the buffer holding the clear text
+	 * @param off the offset of the first letter
+	 * @param len the number of letters to encrypt
+	 */
+	public void encrypt(byte[] buf, int off, int len) {
+		apply(buf, off, len);
+	}
+
+	/**
+	 * Encrypts clear text in place, in parallel.
+	 *
+	 * @param buf the buffer holding the clear text
+	 * @param off the offset of the first letter
+	 * @param len the number of letters to encrypt
+	 */
+	public void encrypt(char[] buf, int off, int len) {
+		apply(buf, off, len);
+	}
+
+	/**
+	 * Encrypts the input clear text in parallel.
+	 *
+	 * @param clearText the input clear text to be encrypted
+	 * @return the encrypted text
+	 */
+	public String encrypt(String clearText) {
+		return apply(clearText);
+	}
+}
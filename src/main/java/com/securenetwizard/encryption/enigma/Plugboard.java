@@ -48,11 +48,15 @@ public class Plugboard {
     /**
      * Parses a string of plugboard pairs and converts them into an array of integer pairs.
      * 
-     * @param plugBoardPairs the string of plugboard pairs (e.g., "AB CD EF")
+     * @param plugBoardPairs the string of plugboard pairs (e.g., "AB CD EF"), or a
+     *                       blank string for no connections
      * @return an array of integer pairs representing the plugboard connections
      * @throws IllegalArgumentException if the input string is invalid
      */
     public static int[][] parsePlugboardPairs(String plugBoardPairs) {
+        if (plugBoardPairs.isBlank())
+            return new int[0][];
+
         String[] c = plugBoardPairs.toUpperCase().split("\\s+");
         int[][] pairs = new int[c.length][];
 
@@ -76,11 +80,79 @@ public class Plugboard {
         return pairs;
     }
 
+    /**
+     * Parses a string of plugboard pairs into a plugboard wiring, the pre-parsed
+     * form accepted by {@link #setWiring(int[])}. Parse a key once and re-key
+     * from the wiring as often as needed.
+     * 
+     * @param plugBoardPairs the string of plugboard pairs (e.g., "AB CD EF"), or a
+     *                       blank string for no connections
+     * @return the wiring, 26 entries mapping each letter to its partner or itself
+     * @throws IllegalArgumentException if the input string is invalid
+     */
+    public static int[] parseWiring(String plugBoardPairs) {
+        final int[] wiring = new int[SWITCH_POSITIONS];
+        parseWiring(plugBoardPairs, wiring);
+
+        return wiring;
+    }
+
+    /**
+     * Parses a string of plugboard pairs into a caller supplied wiring, without
+     * allocating. Pairs are separated by whitespace and lower case letters are
+     * accepted. On error the wiring is left partially written.
+     * 
+     * @param plugBoardPairs the string of plugboard pairs, or a blank string
+     * @param wiring         receives the 26 entry wiring
+     * @throws IllegalArgumentException if the input string is invalid or a
+     *                                  letter is plugged twice
+     */
+    static void parseWiring(String plugBoardPairs, int[] wiring) {
+        for (int i = 0; i < SWITCH_POSITIONS; i++)
+            wiring[i] = i;
+
+        int count = 0;
+        for (int i = 0, len = plugBoardPairs.length(); i < len; i++) {
+            if (Character.isWhitespace(plugBoardPairs.charAt(i)))
+                continue;
+
+            if (i + 1 >= len || (i + 2 < len && !Character.isWhitespace(plugBoardPairs.charAt(i + 2))))
+                throw new IllegalArgumentException("invalid pairs in the plugBoardPairs");
+            if (++count > SWITCH_MAX_ENTRIES)
+                throw new IllegalArgumentException("invalid pairs in the plugBoardPairs");
+
+            final int a = letter(plugBoardPairs.charAt(i));
+            final int b = letter(plugBoardPairs.charAt(i + 1));
+            if (a < 0 || b < 0)
+                throw new IllegalArgumentException("pairs are out of bounds in the plugBoardPairs");
+            if (a == b || wiring[a] != a || wiring[b] != b)
+                throw new IllegalArgumentException("letter plugged twice in the plugBoardPairs");
+
+            wiring[a] = b;
+            wiring[b] = a;
+            i += 2;
+        }
+    }
+
+    private static int letter(char ch) {
+        if (ch >= 'A' && ch <= 'Z')
+            return ch - 'A';
+        if (ch >= 'a' && ch <= 'z')
+            return ch - 'a';
+
+        return -1;
+    }
+
     /**
      * The internal table representing plugboard connections.
      */
     private final int[] table = new int[SWITCH_POSITIONS];
 
+    /**
+     * Parse buffer, so a bad key string leaves the current connections intact.
+     */
+    private final int[] parsed = new int[SWITCH_POSITIONS];
+
     /**
      * Constructs a new plugboard with default settings (no connections).
      */
@@ -101,16 +173,41 @@ public class Plugboard {
     }
 
     /**
-     * Sets the plugboard configuration using a string of letter pairs.
+     * Sets the plugboard configuration using a string of letter pairs, replacing
+     * any previous connections.
      * 
-     * @param plugBoardPairs the string of plugboard pairs (e.g., "AB CD EF")
+     * @param plugBoardPairs the string of plugboard pairs (e.g., "AB CD EF"), or a
+     *                       blank string for no connections
+     * @throws IllegalArgumentException if the input string is invalid or a
+     *                                  letter is plugged twice
      */
     public void setPlugboard(String plugBoardPairs) {
-        int[][] pairs = parsePlugboardPairs(plugBoardPairs);
+        parseWiring(plugBoardPairs, parsed);
+        System.arraycopy(parsed, 0, table, 0, SWITCH_POSITIONS);
+    }
+
+    /**
+     * Sets the plugboard configuration from a pre-parsed wiring, see
+     * {@link #parseWiring(String)}, replacing any previous connections. The
+     * wiring is copied in place.
+     * 
+     * @param wiring the 26 entry wiring, each letter mapped to its partner or
+     *               itself
+     * @throws IllegalArgumentException if the wiring is not a valid plugboard
+     */
+    public void setWiring(int[] wiring) {
+        if (wiring.length != SWITCH_POSITIONS)
+            throw new IllegalArgumentException("expecting " + SWITCH_POSITIONS + " plugboard positions");
 
-        for (int[] pair : pairs) {
-            table[pair[0]] = pair[1];
-            table[pair[1]] = pair[0];
+        int count = 0;
+        for (int i = 0; i < SWITCH_POSITIONS; i++) {
+            final int b = wiring[i];
+            if (b < 0 || b >= SWITCH_POSITIONS || wiring[b] != i)
+                throw new IllegalArgumentException("plugboard wiring is not a set of pairs");
+            if (b > i && ++count > SWITCH_MAX_ENTRIES)
+                throw new IllegalArgumentException("too many pairs in the plugboard wiring");
         }
+
+        System.arraycopy(wiring, 0, table, 0, SWITCH_POSITIONS);
     }
 }
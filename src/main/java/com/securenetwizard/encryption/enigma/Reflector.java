@@ -215,6 +215,11 @@ public class Reflector {
      */
     public static final int REFLECTOR_C = 1;
 
+    /**
+     * The letter names of the reflectors, indexed by reflector index.
+     */
+    static final String[] REFLECTOR_NAMES = { "B", "C" };
+
     /**
      * Array of reflector settings for each reflector type.
      */
@@ -279,9 +284,121 @@ public class Reflector {
         },
     };
 
+    /**
+     * Thin reflector index for the M4 Reflector B thin.
+     */
+    public static final int REFLECTOR_B_THIN = 0;
+
+    /**
+     * Thin reflector index for the M4 Reflector C thin.
+     */
+    public static final int REFLECTOR_C_THIN = 1;
+
+    /**
+     * The names of the thin reflectors, indexed by thin reflector index.
+     */
+    static final String[] THIN_REFLECTOR_NAMES = { "B-THIN", "C-THIN" };
+
+    /**
+     * Array of thin reflector settings for each M4 thin reflector type.
+     */
+    // @formatter:off
+    public static final int[][] THIN_REFLECTORS = {
+        // Reflector B thin
+        {4, 13, 10, 16, 0, 20, 24, 22, 9, 8, 2, 14, 15, 1, 11, 12, 3, 23, 25, 21, 5, 19, 7, 17, 6, 18},
+        // Reflector C thin
+        {17, 3, 14, 1, 9, 13, 19, 10, 21, 4, 7, 12, 11, 5, 2, 22, 25, 0, 23, 6, 24, 8, 15, 18, 20, 16}
+    };
+    // @formatter:on
+
+    /**
+     * One shared instance per reflector, reflectors hold no mutable state.
+     */
+    private static final Reflector[] INSTANCES = {
+        new Reflector(REFLECTOR_B),
+        new Reflector(REFLECTOR_C),
+    };
+
+    /**
+     * Memoized folds, indexed by thin reflector, Greek rotor and dial. Entries
+     * are filled on first use; a racing thread at worst folds the same entry
+     * twice, and the final wiring field makes the published instance safe.
+     */
+    private static final Reflector[] FOLDS = new Reflector[THIN_REFLECTORS.length
+            * Rotor.GREEK_ROTORS.length * Rotor.ROTOR_POSITIONS];
+
+    /**
+     * Returns the memoized fold of a Greek rotor and a thin reflector, see
+     * {@link #fold(int, int, int)}. Only the first call for each combination
+     * allocates.
+     *
+     * @param thinIndex  the thin reflector index
+     * @param greekIndex the Greek rotor index
+     * @param dial       the dial position of the Greek rotor
+     * @return the shared equivalent reflector
+     * @throws IndexOutOfBoundsException if an index is out of range
+     */
+    static Reflector folded(int thinIndex, int greekIndex, int dial) {
+        Objects.checkIndex(thinIndex, THIN_REFLECTORS.length);
+        Objects.checkIndex(greekIndex, Rotor.GREEK_ROTORS.length);
+
+        final int d = Math.floorMod(dial, Rotor.ROTOR_POSITIONS);
+        final int i = (thinIndex * Rotor.GREEK_ROTORS.length + greekIndex) * Rotor.ROTOR_POSITIONS + d;
+
+        Reflector folded = FOLDS[i];
+        if (folded == null)
+            FOLDS[i] = folded = fold(thinIndex, greekIndex, d);
+
+        return folded;
+    }
+
+    /**
+     * Folds a Greek rotor at a fixed dial position and a thin reflector into a
+     * single reflector. The Greek rotor never steps, so the signal path
+     * {@code greek -> thin reflector -> greek} is the same involution for every
+     * key press and a four rotor machine runs on the three rotor data path.
+     *
+     * @param thinIndex  the thin reflector index
+     * @param greekIndex the Greek rotor index
+     * @param dial       the dial position of the Greek rotor
+     * @return the equivalent reflector
+     * @throws IndexOutOfBoundsException if an index is out of range
+     */
+    public static Reflector fold(int thinIndex, int greekIndex, int dial) {
+        final int[] thin = THIN_REFLECTORS[Objects.checkIndex(thinIndex, THIN_REFLECTORS.length)];
+        final int[] greek = Rotor.GREEK_ROTORS[Objects.checkIndex(greekIndex, Rotor.GREEK_ROTORS.length)];
+        final int n = Rotor.ROTOR_POSITIONS;
+        final int d = Math.floorMod(dial, n);
+
+        final int[] reverse = new int[n];
+        for (int i = 0; i < n; i++)
+            reverse[greek[i]] = i;
+
+        final int[] settings = new int[n];
+        for (int ch = 0; ch < n; ch++) {
+            int x = (greek[(ch + d) % n] - d + n) % n;
+            x = thin[x];
+            settings[ch] = (reverse[(x + d) % n] - d + n) % n;
+        }
+
+        return new Reflector(settings);
+    }
+
+    /**
+     * Returns the shared instance of a reflector.
+     *
+     * @param index the index of the reflector ({@link #REFLECTOR_B} or {@link #REFLECTOR_C})
+     * @return the shared reflector
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public static Reflector of(int index) {
+        return INSTANCES[Objects.checkIndex(index, INSTANCES.length)];
+    }
+
     /**
      * Parses the input reflector string and returns the corresponding reflector index.
-     * 
+     * The thin reflectors are parsed by {@link #parseThinReflectorString(String)}.
+     *
      * @param reflectorString the input reflector string ("B" or "C")
      * @return the corresponding reflector index
      * @throws IllegalArgumentException if the input string is invalid
@@ -297,6 +414,21 @@ public class Reflector {
         }
     }
 
+    /**
+     * Parses a thin reflector string and returns the corresponding thin reflector index.
+     *
+     * @param reflectorString the thin reflector string ("B-THIN" or "C-THIN", any case)
+     * @return the corresponding thin reflector index
+     * @throws IllegalArgumentException if the input string is invalid
+     */
+    public static int parseThinReflectorString(String reflectorString) {
+        for (int i = 0; i < THIN_REFLECTOR_NAMES.length; i++)
+            if (THIN_REFLECTOR_NAMES[i].equalsIgnoreCase(reflectorString))
+                return i;
+
+        throw new IllegalArgumentException("invalid thin reflector string " + reflectorString);
+    }
+
     private final int[] settings;
 
     /**
@@ -310,6 +442,15 @@ public class Reflector {
         settings = REFLECTORS[index];
     }
 
+    /**
+     * Constructs a reflector over an explicit wiring, see {@link #fold(int, int, int)}.
+     *
+     * @param settings the reflector wiring, an involution of the 26 letters
+     */
+    Reflector(int[] settings) {
+        this.settings = settings;
+    }
+
     /**
      * Reflects the input character according to the reflector settings.
      * 
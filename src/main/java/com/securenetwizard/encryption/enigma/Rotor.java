@@ -517,6 +517,11 @@ public class Rotor {
      */
     public static final int ROTOR_V = 4;
 
+    /**
+     * The roman numeral names of the rotors, indexed by rotor index.
+     */
+    static final String[] ROTOR_NAMES = { "I", "II", "III", "IV", "V" };
+
     /**
      * The number of positions on the rotor.
      */
@@ -553,6 +558,170 @@ public class Rotor {
     };
     // @formatter:on
 
+    /**
+     * The inverse wiring table for each rotor, shared by all rotor instances.
+     */
+    static final int[][] REVERSE_ROTORS = new int[ROTORS.length][];
+
+    static {
+        for (int r = 0; r < ROTORS.length; r++) {
+            REVERSE_ROTORS[r] = new int[ROTOR_POSITIONS];
+            for (int i = 0; i < ROTOR_POSITIONS; i++)
+                REVERSE_ROTORS[r][ROTORS[r][i]] = i;
+        }
+    }
+
+    /**
+     * Greek rotor index for the M4 Beta rotor.
+     */
+    public static final int GREEK_BETA = 0;
+
+    /**
+     * Greek rotor index for the M4 Gamma rotor.
+     */
+    public static final int GREEK_GAMMA = 1;
+
+    /**
+     * The names of the Greek rotors, indexed by Greek rotor index.
+     */
+    static final String[] GREEK_ROTOR_NAMES = { "Beta", "Gamma" };
+
+    /**
+     * The wiring table for each Greek rotor. The Greek rotors of the M4 sit
+     * between rotor3 and the thin reflector and never step.
+     */
+    // @formatter:off
+    public static final int[][] GREEK_ROTORS = {
+        // Beta
+        {11, 4, 24, 9, 21, 2, 13, 8, 23, 22, 15, 1, 16, 12, 3, 17, 19, 0, 10, 25, 6, 5, 20, 7, 14, 18},
+        // Gamma
+        {5, 18, 14, 10, 0, 13, 20, 4, 17, 7, 12, 1, 19, 8, 24, 2, 22, 11, 16, 15, 25, 23, 21, 6, 9, 3}
+    };
+    // @formatter:on
+
+    /**
+     * Parses a Greek rotor name and returns the corresponding Greek rotor index.
+     *
+     * @param greekRotorName the Greek rotor name ("Beta" or "Gamma", any case)
+     * @return the corresponding Greek rotor index
+     * @throws IllegalArgumentException if the name is invalid
+     */
+    public static int parseGreekRotorString(String greekRotorName) {
+        return parseGreekRotorName(greekRotorName, 0, greekRotorName.length());
+    }
+
+    /**
+     * Parses a Greek rotor name within a string, without allocating.
+     *
+     * @param s     the string holding the name
+     * @param start the index of the first character of the name
+     * @param end   the index after the last character of the name
+     * @return the Greek rotor index
+     * @throws IllegalArgumentException if the name is invalid
+     */
+    static int parseGreekRotorName(String s, int start, int end) {
+        final int len = end - start;
+        for (int i = 0; i < GREEK_ROTOR_NAMES.length; i++)
+            if (GREEK_ROTOR_NAMES[i].length() == len && s.regionMatches(true, start, GREEK_ROTOR_NAMES[i], 0, len))
+                return i;
+
+        throw new IllegalArgumentException("invalid greek rotor " + s.substring(start, end));
+    }
+
+    /**
+     * Parses dial letters within a string into dial positions, without
+     * allocating. Letters may be separated by whitespace, and lower case letters
+     * are accepted. A run of digits is a 1-based number from 01 to 26, the way
+     * ring settings are often written.
+     *
+     * @param s     the string of letters or numbers (e.g., "A B C" or "01 02 03")
+     * @param dials receives the 0-based dial positions
+     * @return the number of dial positions parsed
+     * @throws IllegalArgumentException if a character is not a letter or the
+     *                                  string holds more positions than fit
+     */
+    static int parseDials(String s, int[] dials) {
+        int count = 0;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char ch = s.charAt(i);
+            if (Character.isWhitespace(ch))
+                continue;
+
+            int dial;
+            if (ch >= '0' && ch <= '9') {
+                dial = 0;
+                for (; i < len && (ch = s.charAt(i)) >= '0' && ch <= '9'; i++)
+                    dial = Math.min(dial * 10 + (ch - '0'), 100);
+                i--;
+                dial--;
+
+            } else if (ch >= 'A' && ch <= 'Z') {
+                dial = ch - 'A';
+
+            } else if (ch >= 'a' && ch <= 'z') {
+                dial = ch - 'a';
+
+            } else {
+                dial = -1;
+            }
+
+            if (dial < 0 || dial >= ROTOR_POSITIONS)
+                throw new IllegalArgumentException("invalid dial positions " + s);
+            if (count == dials.length)
+                throw new IllegalArgumentException("expecting at most " + dials.length + " dial positions " + s);
+
+            dials[count++] = dial;
+        }
+
+        return count;
+    }
+
+    /**
+     * Parses one rotor name within a string, a roman numeral or its number,
+     * without allocating. The names accepted are those of
+     * {@link #parseRotorsString(String)}.
+     *
+     * @param s     the string holding the name
+     * @param start the index of the first character of the name
+     * @param end   the index after the last character of the name
+     * @return the rotor index
+     * @throws IllegalArgumentException if the name is invalid
+     */
+    static int parseRotorName(String s, int start, int end) {
+        switch (end - start) {
+            case 1:
+                switch (s.charAt(start)) {
+                    case '0':
+                    case 'I':
+                        return 0;
+                    case '2':
+                        return 1;
+                    case '3':
+                        return 2;
+                    case '4':
+                        return 3;
+                    case '5':
+                    case 'V':
+                        return 4;
+                }
+                break;
+
+            case 2:
+                if (s.startsWith("II", start))
+                    return 1;
+                if (s.startsWith("IV", start))
+                    return 3;
+                break;
+
+            case 3:
+                if (s.startsWith("III", start))
+                    return 2;
+                break;
+        }
+
+        throw new IllegalArgumentException("invalid rotor roman index " + s.substring(start, end));
+    }
+
     /**
      * Parses the input dial positions character array and returns an array of integers representing the initial rotor positions.
      * 
@@ -637,10 +806,12 @@ public class Rotor {
         return rotors;
     }
 
-    private final int[] table;
-    private final int[] reverse;
-    private final int notch; // Fixed notch or dial index on which it rotates the next rotor
+    private int[] table;
+    private int[] reverse;
+    private int notch; // Fixed notch or dial index on which it rotates the next rotor
     private int dial;
+    private int ring; // Ringstellung, turns the wiring against the dial letters
+    private int shift; // dial - ring, the rotation of the wiring
     private final Rotor nextRotor;
 
     /**
@@ -660,16 +831,8 @@ public class Rotor {
      */
     public Rotor(int index, Rotor nextRotor) {
         this.nextRotor = nextRotor;
-        Objects.checkIndex(index, 5);
 
-        table = ROTORS[index];
-        notch = ROTOR_NOTCHES[index];
-
-        reverse = new int[table.length];
-        for (int i = 0; i < table.length; i++) {
-            int ch = table[i];
-            reverse[ch] = i;
-        }
+        setWiring(index);
     }
 
     /**
@@ -681,8 +844,9 @@ public class Rotor {
     public int forward(int ch) {
     	assert ch >= 0 && ch < 26: "negative ch " + ch;
     	
-        ch = (ch + dial) % ROTOR_POSITIONS;
+        ch = (ch + shift) % ROTOR_POSITIONS;
         ch = table[ch];
+        ch = (ch - shift + ROTOR_POSITIONS) % ROTOR_POSITIONS;
 
     	assert ch >= 0 && ch < 26: "negative ch " + ch;
        return ch;
@@ -697,26 +861,65 @@ public class Rotor {
     public int reverse(int ch) {
     	assert ch >= 0 && ch < 26: "negative ch " + ch;
     	
-        ch = (ch + dial) % ROTOR_POSITIONS;
+        ch = (ch + shift) % ROTOR_POSITIONS;
         ch = reverse[ch];
+        ch = (ch - shift + ROTOR_POSITIONS) % ROTOR_POSITIONS;
 
     	assert ch >= 0 && ch < 26: "negative ch " + ch;
         return ch;
     }
 
     /**
-     * Rotates the rotor. If the rotor reaches its notch position, it rotates the next rotor in the sequence.
+     * Gets the notch position of the rotor, the dial position from which it turns over the next rotor.
+     * 
+     * @return the notch position
+     */
+    public int getNotch() {
+        return notch;
+    }
+
+    /**
+     * Checks if the rotor dial is at its notch position.
+     * 
+     * @return true if the next rotation of this rotor also rotates the next rotor
+     */
+    boolean isAtNotch() {
+        return dial == notch;
+    }
+
+    /**
+     * Rotates the rotor. If the rotor leaves its notch position, it rotates the next rotor in the sequence.
      */
     void rotate() {
+        boolean turnover = (dial == notch);
 
     	dial ++;
         dial %= ROTOR_POSITIONS;
+        shift = (dial - ring + ROTOR_POSITIONS) % ROTOR_POSITIONS;
 
-        if (dial == notch && nextRotor != null) {
+        if (turnover && nextRotor != null) {
             nextRotor.rotate();
         }
     }
 
+    /**
+     * Gets the current dial position of the rotor.
+     * 
+     * @return the current dial position
+     */
+    public int getDial() {
+        return dial;
+    }
+
+    /**
+     * Gets the ring setting of the rotor.
+     * 
+     * @return the ring setting, 0 for A
+     */
+    public int getRing() {
+        return ring;
+    }
+
     /**
      * Sets the dial position of the rotor.
      * 
@@ -724,5 +927,38 @@ public class Rotor {
      */
     public void setDial(int dialPosition) {
         dial = dialPosition;
+        shift = (dial - ring + ROTOR_POSITIONS) % ROTOR_POSITIONS;
+    }
+
+    /**
+     * Replaces the rotor in this slot with another rotor, keeping the dial and
+     * ring setting. The shared static wiring tables are used, nothing is
+     * allocated.
+     * 
+     * @param index the 0-based index of the rotor (0 for Rotor I, 1 for Rotor II, etc.)
+     */
+    void setWiring(int index) {
+        Objects.checkIndex(index, ROTORS.length);
+
+        table = ROTORS[index];
+        reverse = REVERSE_ROTORS[index];
+        notch = ROTOR_NOTCHES[index];
+    }
+
+    /**
+     * Sets the ring setting (Ringstellung) of the rotor. The ring turns the
+     * wiring against the dial letters and the notch, so with ring setting B the
+     * wiring sits one position back while the rotor still turns over at the
+     * same dial letter.
+     * 
+     * @param ringSetting the ring setting, 0 for A to 25 for Z
+     * @throws IllegalArgumentException if the ring setting is out of range
+     */
+    public void setRing(int ringSetting) {
+        if (ringSetting < 0 || ringSetting >= ROTOR_POSITIONS)
+            throw new IllegalArgumentException("invalid ring setting " + ringSetting);
+
+        ring = ringSetting;
+        shift = (dial - ring + ROTOR_POSITIONS) % ROTOR_POSITIONS;
     }
 }
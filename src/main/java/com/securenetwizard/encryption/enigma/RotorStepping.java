@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Rotor stepping arithmetic shared by the {@link EnigmaMachine} and
+ * {@link CompiledEnigma}. Before each key press rotor1 always advances, rotor2
+ * advances when rotor1 leaves its notch, and rotor3 advances when rotor2
+ * leaves its notch. Because the pawl that drives rotor3 also pushes on rotor2,
+ * rotor2 advances again on the key press after it reaches its notch; this is
+ * the historical double-step anomaly.
+ *
+ * <p>
+ * Rotor states are exchanged as position indexes, see
+ * {@link CompiledEnigma#positionIndex(int, int, int)}. The stepping only
+ * depends on the notches of rotor1 and rotor2, so the successor of every
+ * position, double steps included, is precomputed once per pair of notches by
+ * {@link #successors(int, int)}. Stepping then costs a single table read
+ * instead of notch comparisons and modulo arithmetic. The dials step by the
+ * letters in the window, so ring settings do not change the stepping.
+ * </p>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+final class RotorStepping {
+
+	private static final int N = Rotor.ROTOR_POSITIONS;
+
+	/**
+	 * Successor tables indexed by {@code notch2 * 26 + notch1}, built on first
+	 * use. Lookups take no lock; racing threads at worst build the same table
+	 * twice and all keep the first one published.
+	 */
+	private static final AtomicReferenceArray<int[]> SUCCESSORS = new AtomicReferenceArray<>(N * N);
+
+	/**
+	 * Computes the rotor state after a number of key presses in constant time.
+	 *
+	 * <p>
+	 * Rotor1 simply moves {@code offset} positions. Rotor2 moves once for each
+	 * press on which rotor1 is at its notch (every 26 presses) and once more on
+	 * each double step. Double steps happen on the press following the arrival of
+	 * rotor2 at its notch, which after the first arrival recurs every 25 carries
+	 * from rotor1. Rotor3 moves once per double step.
+	 * </p>
+	 *
+	 * @param notch1 the notch of rotor1
+	 * @param notch2 the notch of rotor2
+	 * @param dial1  the starting dial of rotor1
+	 * @param dial2  the starting dial of rotor2
+	 * @param dial3  the starting dial of rotor3
+	 * @param offset the number of key presses, 0 or more
+	 * @return the position index after {@code offset} key presses
+	 */
+	static int seek(int notch1, int notch2, int dial1, int dial2, int dial3, long offset) {
+		if (offset < 0)
+			throw new IllegalArgumentException("negative offset " + offset);
+
+		if (offset == 0)
+			return CompiledEnigma.positionIndex(dial1, dial2, dial3);
+
+		/* Starting on the notch, rotor2 double steps on the very first press */
+		if (dial2 == notch2) {
+			dial1 = (dial1 + 1) % N;
+			dial2 = (dial2 + 1) % N;
+			dial3 = (dial3 + 1) % N;
+			offset--;
+		}
+
+		/* 1-based press on which rotor1 first carries into rotor2 */
+		final long firstCarry = Math.floorMod(notch1 - dial1, N) + 1;
+		final long carries = carries(firstCarry, offset);
+
+		/* Carries needed to bring rotor2 onto its notch, then a double step follows */
+		final long toNotch = Math.floorMod(notch2 - dial2, N);
+		final long carriesBeforeLast = carries(firstCarry, offset - 1);
+		final long doubleSteps = (carriesBeforeLast >= toNotch)
+				? (carriesBeforeLast - toNotch) / (N - 1) + 1
+				: 0;
+
+		return CompiledEnigma.positionIndex(
+				(int) ((dial1 + offset) % N),
+				(int) ((dial2 + carries + doubleSteps) % N),
+				(int) ((dial3 + doubleSteps) % N));
+	}
+
+	/**
+	 * Lists the permutation table offsets, {@code positionIndex * 26}, in effect
+	 * for each of a number of consecutive key presses.
+	 *
+	 * @param next     the successor table of the rotor notches, see
+	 *                 {@link #successors(int, int)}
+	 * @param position the position index before the first key press
+	 * @param bases    receives one table offset per key press
+	 * @param len      the number of key presses
+	 */
+	static void bases(int[] next, int position, int[] bases, int len) {
+		for (int i = 0; i < len; i++) {
+			position = next[position];
+			bases[i] = position * N;
+		}
+	}
+
+	/**
+	 * Counts the carries from rotor1 into rotor2 within a number of presses.
+	 *
+	 * @param firstCarry the 1-based press of the first carry
+	 * @param presses    the number of presses
+	 * @return the number of carries
+	 */
+	private static long carries(long firstCarry, long presses) {
+		return (presses >= firstCarry) ? (presses - firstCarry) / N + 1 : 0;
+	}
+
+	/**
+	 * Gets the successor table of a pair of notches, the position index after one
+	 * key press for every position index. The table is shared and must not be
+	 * modified.
+	 *
+	 * @param notch1 the notch of rotor1
+	 * @param notch2 the notch of rotor2
+	 * @return the successor of each of the {@value CompiledEnigma#POSITIONS}
+	 *         positions
+	 */
+	static int[] successors(int notch1, int notch2) {
+		final int slot = notch2 * N + notch1;
+		final int[] cached = SUCCESSORS.get(slot);
+		if (cached != null)
+			return cached;
+
+		final int[] next = new int[CompiledEnigma.POSITIONS];
+		for (int position = 0; position < next.length; position++) {
+			int dial1 = position % N;
+			int dial2 = (position / N) % N;
+			int dial3 = position / (N * N);
+
+			if (dial2 == notch2) {
+				dial2 = (dial2 + 1) % N;
+				dial3 = (dial3 + 1) % N;
+
+			} else if (dial1 == notch1) {
+				dial2 = (dial2 + 1) % N;
+			}
+
+			dial1 = (dial1 + 1) % N;
+
+			next[position] = CompiledEnigma.positionIndex(dial1, dial2, dial3);
+		}
+
+		final int[] witness = SUCCESSORS.compareAndExchange(slot, null, next);
+
+		return (witness == null) ? next : witness;
+	}
+
+	private RotorStepping() {
+	}
+}
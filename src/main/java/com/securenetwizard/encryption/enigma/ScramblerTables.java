@@ -0,0 +1,267 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Off-heap store of the unsteckered scrambler tables, rotors and reflector
+ * without a plugboard, of every order of 3 distinct rotors and every
+ * reflector. Each table is the permutation of every rotor position, as
+ * compiled by {@link EnigmaMachine}, so the store holds
+ * {@value #TABLE_COUNT} tables of {@value #TABLE_BYTES} bytes, about 55 MB.
+ *
+ * <p>
+ * The tables live outside the heap, in a direct buffer when generated or in a
+ * read-only memory mapping when loaded, so the garbage collector never scans
+ * them. A store is generated once and written with {@link #write(Path)};
+ * {@link #load(Path)} then maps the file instead of compiling the tables
+ * again. All processes mapping the same file share one page-cached copy, and
+ * loading costs no more than paging the tables in. The file is a 16 byte
+ * header, the magic {@code "SCRM"}, a format version, the number of tables and
+ * the bytes per table, followed by the tables.
+ * </p>
+ *
+ * <p>
+ * The store is immutable and safe to share between threads. The Bombe and the
+ * cypher-text-only attack read their scrambler tables from a store when one is
+ * set, see {@link Bombe#setScramblerTables(ScramblerTables)},
+ * {@link CribDragger#setScramblerTables(ScramblerTables)} and
+ * {@link CiphertextOnlyAttack#setScramblerTables(ScramblerTables)}.
+ * </p>
+ *
+ * <pre>
+ * ScramblerTables tables = ScramblerTables.loadOrGenerate(Paths.get("scramblers.bin"));
+ *
+ * CiphertextOnlyAttack attack = new CiphertextOnlyAttack(cypherText);
+ * attack.setScramblerTables(tables);
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public final class ScramblerTables {
+
+	/**
+	 * The bytes of one scrambler table, one permutation per rotor position.
+	 */
+	public static final int TABLE_BYTES = CompiledEnigma.POSITIONS * Rotor.ROTOR_POSITIONS;
+
+	/**
+	 * The number of tables, one per rotor order and reflector.
+	 */
+	public static final int TABLE_COUNT = 60 * 2;
+
+	private static final int R = Rotor.ROTORS.length;
+
+	/** File magic, "SCRM" */
+	private static final int MAGIC = 0x5343524D;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+
+	/** Order number of each rotor order, indexed by (r1 * 5 + r2) * 5 + r3, -1 for repeated rotors */
+	private static final int[] ORDER_INDEX = new int[R * R * R];
+
+	static {
+		final List<int[]> orders = Bombe.rotorOrders();
+		if (orders.size() * Reflector.REFLECTORS.length != TABLE_COUNT)
+			throw new IllegalStateException("unexpected number of rotor orders " + orders.size());
+
+		Arrays.fill(ORDER_INDEX, -1);
+		for (int i = 0; i < orders.size(); i++) {
+			final int[] rotors = orders.get(i);
+			ORDER_INDEX[(rotors[0] * R + rotors[1]) * R + rotors[2]] = i;
+		}
+	}
+
+	/**
+	 * Compiles the unsteckered scrambler table of one rotor order and reflector.
+	 *
+	 * @param rotors    the rotor order
+	 * @param reflector the reflector index
+	 * @return the permutation table of every rotor position
+	 */
+	static byte[] compile(int[] rotors, int reflector) {
+		EnigmaMachine machine = new EnigmaMachine();
+		machine.setRotors(rotors);
+		machine.setReflector(Reflector.REFLECTOR_NAMES[reflector]);
+
+		return machine.compileTable();
+	}
+
+	/**
+	 * Compiles every scrambler table into a new direct buffer. The tables are
+	 * compiled in parallel on the common pool.
+	 *
+	 * @return the generated store
+	 */
+	public static ScramblerTables generate() {
+		final ByteBuffer tables = ByteBuffer.allocateDirect(TABLE_COUNT * TABLE_BYTES);
+		final List<int[]> orders = Bombe.rotorOrders();
+		final int reflectors = Reflector.REFLECTORS.length;
+
+		IntStream.range(0, TABLE_COUNT).parallel().forEach(i -> tables.duplicate()
+				.position(i * TABLE_BYTES)
+				.put(compile(orders.get(i / reflectors), i % reflectors)));
+
+		return new ScramblerTables(tables);
+	}
+
+	/**
+	 * Loads a store written by {@link #write(Path)}. The tables are memory mapped
+	 * read-only and stay mapped while the store is reachable.
+	 *
+	 * @param path the store file
+	 * @return the loaded store
+	 * @throws IOException              if the file can not be read
+	 * @throws IllegalArgumentException if the file is not a valid store
+	 */
+	public static ScramblerTables load(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE)
+				throw new IllegalArgumentException("not a scrambler tables file " + path);
+
+			MappedByteBuffer map = channel.map(MapMode.READ_ONLY, 0, channel.size());
+			map.order(ByteOrder.LITTLE_ENDIAN);
+
+			if (map.getInt(0) != MAGIC)
+				throw new IllegalArgumentException("not a scrambler tables file " + path);
+			if (map.getInt(4) != VERSION)
+				throw new IllegalArgumentException("unsupported scrambler tables version " + map.getInt(4));
+			if (map.getInt(8) != TABLE_COUNT || map.getInt(12) != TABLE_BYTES
+					|| channel.size() != HEADER_SIZE + (long) TABLE_COUNT * TABLE_BYTES)
+				throw new IllegalArgumentException("truncated scrambler tables file " + path);
+
+			return new ScramblerTables(map.position(HEADER_SIZE).slice());
+		}
+	}
+
+	/**
+	 * Loads a store file, or generates the store and writes the file when it does
+	 * not exist yet. The file is written under a temporary name and moved into
+	 * place, so concurrent processes never map a partial file.
+	 *
+	 * @param path the store file
+	 * @return the loaded or generated store
+	 * @throws IOException if the file can not be read or written
+	 */
+	public static ScramblerTables loadOrGenerate(Path path) throws IOException {
+		if (Files.exists(path))
+			return load(path);
+
+		final ScramblerTables tables = generate();
+
+		final Path dir = path.toAbsolutePath().getParent();
+		final Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+		try {
+			tables.write(tmp);
+			Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+
+		return tables;
+	}
+
+	private final ByteBuffer tables;
+
+	/**
+	 * Constructs a store over the concatenated tables.
+	 *
+	 * @param tables the tables, direct or memory mapped
+	 */
+	private ScramblerTables(ByteBuffer tables) {
+		this.tables = tables;
+	}
+
+	/**
+	 * Gets the scrambler table of a rotor order and reflector. The table is read
+	 * with absolute gets, {@code table.get(position * 26 + letter)}.
+	 *
+	 * @param rotors    the rotor order, 3 distinct rotor numbers
+	 * @param reflector the reflector index
+	 * @return a read-only view of the table
+	 * @throws IllegalArgumentException if the rotor order repeats a rotor
+	 */
+	public ByteBuffer table(int[] rotors, int reflector) {
+		if (rotors.length != 3)
+			throw new IllegalArgumentException("expected 3 rotor numbers");
+		for (int r : rotors)
+			if (r < 0 || r >= R)
+				throw new IllegalArgumentException("rotor numbers must be between 0 and 4 inclusive");
+		if (reflector < 0 || reflector >= Reflector.REFLECTORS.length)
+			throw new IllegalArgumentException("invalid reflector index " + reflector);
+
+		final int order = ORDER_INDEX[(rotors[0] * R + rotors[1]) * R + rotors[2]];
+		if (order < 0)
+			throw new IllegalArgumentException("rotor order repeats a rotor " + Arrays.toString(rotors));
+
+		final int offset = (order * Reflector.REFLECTORS.length + reflector) * TABLE_BYTES;
+
+		return tables.duplicate()
+				.position(offset)
+				.limit(offset + TABLE_BYTES)
+				.slice()
+				.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Writes the store in the binary format read by {@link #load(Path)}.
+	 *
+	 * @param path the store file, created or replaced
+	 * @throws IOException if the file can not be written
+	 */
+	public void write(Path path) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+				.order(ByteOrder.LITTLE_ENDIAN)
+				.putInt(MAGIC)
+				.putInt(VERSION)
+				.putInt(TABLE_COUNT)
+				.putInt(TABLE_BYTES)
+				.flip();
+		ByteBuffer body = tables.duplicate().clear();
+
+		try (FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			while (header.hasRemaining())
+				channel.write(header);
+			while (body.hasRemaining())
+				channel.write(body);
+		}
+	}
+}
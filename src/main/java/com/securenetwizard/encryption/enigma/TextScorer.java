@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+/**
+ * Scores how closely a candidate decryption resembles natural language. Higher
+ * scores are better. Scorers are called concurrently from the search workers
+ * and must be thread-safe.
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ * @see NGramModel
+ */
+public interface TextScorer {
+
+	/**
+	 * Scores by the index of coincidence, the probability that two letters drawn
+	 * from the text are the same. Random text scores about 0.038, German and
+	 * English text about 0.066 to 0.076. It needs no language model, but only
+	 * measures the letter frequency distribution.
+	 */
+	TextScorer INDEX_OF_COINCIDENCE = (letters, len) -> {
+		final int[] counts = new int[Rotor.ROTOR_POSITIONS];
+		for (int i = 0; i < len; i++)
+			counts[letters[i]]++;
+
+		return indexOfCoincidence(counts, len);
+	};
+
+	/**
+	 * Computes the index of coincidence from letter counts.
+	 *
+	 * @param counts the count of each letter
+	 * @param len    the total number of letters
+	 * @return the index of coincidence
+	 */
+	static double indexOfCoincidence(int[] counts, int len) {
+		long sum = 0;
+		for (int c : counts)
+			sum += (long) c * (c - 1);
+
+		return (len < 2) ? 0 : (double) sum / ((long) len * (len - 1));
+	}
+
+	/**
+	 * Scores a text.
+	 *
+	 * @param letters the text as letter indexes, 0 for A to 25 for Z
+	 * @param len     the number of letters to score
+	 * @return the score, higher is better
+	 */
+	double score(byte[] letters, int len);
+}
@@ -30,5 +30,8 @@
  * encrypt or decrypt messages.
  */
 module com.securenetwizard.encryption.enigma {
+	requires java.management;
+	requires jdk.jfr;
+
 	exports com.securenetwizard.encryption.enigma;
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Checks the chunked engines against the sequential machine for every input
+ * policy.
+ */
+public class ParallelEnigmaTest {
+
+	private static final int LENGTH = 5000;
+	private static final int CHUNK_SIZE = 97;
+
+	private static EnigmaMachine machine(InputPolicy policy) {
+		EnigmaMachine enigma = new EnigmaMachine();
+		enigma.setRotors("V I IV");
+		enigma.setReflector("B");
+		enigma.setPlugboard("SZ GT DV KU FO MY EW JN IX LQ");
+		enigma.setRingSettings("C Q A");
+		enigma.setInitialPositions("Q E V");
+		enigma.setInputPolicy(policy);
+
+		return enigma;
+	}
+
+	private static String text(InputPolicy policy) {
+		String alphabet = policy == InputPolicy.REJECT
+				? "ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+				: "ABCDEFGHIJKLMNOPQRSTUVWXYZabc ,.";
+
+		Random random = new Random(LENGTH);
+		StringBuilder b = new StringBuilder(LENGTH);
+		for (int i = 0; i < LENGTH; i++)
+			b.append(alphabet.charAt(random.nextInt(alphabet.length())));
+
+		return b.toString();
+	}
+
+	@Test
+	public void fileMatchesSequential() throws IOException {
+		for (InputPolicy policy : InputPolicy.values()) {
+			EnigmaMachine enigma = machine(policy);
+			String clearText = text(policy);
+
+			if (policy != InputPolicy.REJECT) {
+				assertThrows(policy.name(), IllegalArgumentException.class,
+						() -> new FileEnigma(enigma.compile(), ForkJoinPool.commonPool(), CHUNK_SIZE));
+				continue;
+			}
+
+			Path input = Files.createTempFile("clear", ".txt");
+			Path output = Files.createTempFile("cypher", ".txt");
+			try {
+				Files.write(input, clearText.getBytes(StandardCharsets.US_ASCII));
+				new FileEnigma(enigma.compile(), ForkJoinPool.commonPool(), CHUNK_SIZE).encrypt(input, output);
+
+				assertArrayEquals(policy.name(),
+						enigma.encrypt(clearText).getBytes(StandardCharsets.US_ASCII),
+						Files.readAllBytes(output));
+			} finally {
+				Files.delete(input);
+				Files.delete(output);
+			}
+		}
+	}
+
+	@Test
+	public void parallelMatchesSequential() {
+		for (InputPolicy policy : InputPolicy.values()) {
+			EnigmaMachine enigma = machine(policy);
+			String clearText = text(policy);
+
+			if (policy != InputPolicy.REJECT) {
+				assertThrows(policy.name(), IllegalArgumentException.class,
+						() -> new ParallelEnigma(enigma.compile(), ForkJoinPool.commonPool(), CHUNK_SIZE));
+				continue;
+			}
+
+			ParallelEnigma parallel = new ParallelEnigma(enigma.compile(), ForkJoinPool.commonPool(), CHUNK_SIZE);
+			String cypherText = enigma.encrypt(clearText);
+
+			assertEquals(policy.name(), cypherText, parallel.encrypt(clearText));
+			assertEquals(policy.name(), clearText, parallel.decrypt(cypherText));
+
+			byte[] bytes = clearText.getBytes(StandardCharsets.US_ASCII);
+			parallel.encrypt(bytes, 0, bytes.length);
+			assertEquals(policy.name(), cypherText, new String(bytes, StandardCharsets.US_ASCII));
+		}
+	}
+}
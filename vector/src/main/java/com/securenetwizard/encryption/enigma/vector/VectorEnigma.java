@@ -0,0 +1,376 @@
+/*
+ * MIT License
+ *
+ * Copyright 2023 Sly Technologies Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.securenetwizard.encryption.enigma.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.securenetwizard.encryption.enigma.BatchEnigma.MessageRequest;
+import com.securenetwizard.encryption.enigma.Plugboard;
+import com.securenetwizard.encryption.enigma.Reflector;
+import com.securenetwizard.encryption.enigma.Rotor;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Lane-parallel Enigma engine, which encrypts as many messages at once as an
+ * {@link IntVector} has lanes, 8 with AVX2 and 16 with AVX-512. Each lane
+ * carries one message with its own rotor start positions.
+ *
+ * <p>
+ * On every key press the dials of all lanes step together: the notch tests are
+ * vector compares and the carries are masked adds. Each rotor pass adds the
+ * lane's dial to the letter, looks the result up in the rotor wiring and
+ * subtracts the dial again, with compares and masked adds in place of modulo.
+ * The wiring of the rotors, the reflector and the plugboard are held in
+ * registers as slices of {@link #lanes()} entries. A lookup permutes every
+ * slice with {@link IntVector#rearrange(VectorShuffle)} and blends in the
+ * slice each lane's letter falls in, 2 slices with 16 lanes and 4 with 8.
+ * </p>
+ *
+ * <p>
+ * A shuffle lookup uses the same table in every lane, so the lanes of one
+ * vector share the rotors, reflector and plugboard. Messages are grouped by
+ * these settings, which traffic sent under a daily key with per-message start
+ * positions shares, then sorted by length so that a vector's messages need
+ * little padding. Within a group letter {@code i} of every message is one
+ * vector. Instances hold scratch arrays, so each thread needs its own.
+ * </p>
+ *
+ * <p>
+ * The Vector API is an incubator module. Applications on the class path run
+ * with {@code --add-modules jdk.incubator.vector}.
+ * </p>
+ *
+ * <pre>
+ * VectorEnigma engine = new VectorEnigma();
+ * List&lt;String&gt; cypherTexts = engine.encryptAll(List.of(
+ * 		new BatchEnigma.MessageRequest("V I IV", "B", "SZ GT DV KU", "QEV", "HELLO"),
+ * 		new BatchEnigma.MessageRequest("V I IV", "B", "SZ GT DV KU", "AXR", "WORLD")));
+ * </pre>
+ *
+ * @author Sly Technologies Inc
+ * @author repos@slytechs.com
+ */
+public class VectorEnigma {
+
+	/**
+	 * A wiring table split into vectors of {@link #lanes} entries.
+	 */
+	private final class Table {
+
+		private final IntVector[] slices;
+
+		Table(int[] wiring) {
+			final int[] padded = Arrays.copyOf(wiring, slices() * lanes);
+
+			this.slices = new IntVector[slices()];
+			for (int i = 0; i < slices.length; i++)
+				slices[i] = IntVector.fromArray(species, padded, i * lanes);
+		}
+
+		/**
+		 * Looks up a letter in every lane.
+		 *
+		 * @param letters the letters, 0 to 25
+		 * @return the wired letters
+		 */
+		IntVector lookup(IntVector letters) {
+			final VectorShuffle<Integer> inSlice = letters.and(lanes - 1).toShuffle();
+
+			IntVector result = slices[0].rearrange(inSlice);
+			for (int i = 1; i < slices.length; i++)
+				result = result.blend(slices[i].rearrange(inSlice), letters.compare(VectorOperators.GE, i * lanes));
+
+			return result;
+		}
+	}
+
+	/**
+	 * The shared settings of a group of messages.
+	 */
+	private final class Key {
+
+		private final Table plugboard;
+		private final Table[] forward = new Table[3];
+		private final Table[] reverse = new Table[3];
+		private final Table reflector;
+		private final int notch1;
+		private final int notch2;
+
+		Key(MessageRequest request) {
+			final int[] rotors = Rotor.parseRotorsString(request.getRotors());
+			final int reflectorIndex = Reflector.parseReflectorString(request.getReflector().toUpperCase());
+
+			this.plugboard = new Table(Plugboard.parseWiring(request.getPlugboard()));
+			this.reflector = new Table(Reflector.REFLECTORS[reflectorIndex]);
+			for (int i = 0; i < 3; i++) {
+				forward[i] = new Table(Rotor.ROTORS[rotors[i]]);
+				reverse[i] = new Table(INVERSE[rotors[i]]);
+			}
+
+			this.notch1 = Rotor.ROTOR_NOTCHES[rotors[0]];
+			this.notch2 = Rotor.ROTOR_NOTCHES[rotors[1]];
+		}
+	}
+
+	private static final int N = Rotor.ROTOR_POSITIONS;
+
+	/** The inverse wiring of each rotor, for the path back from the reflector */
+	private static final int[][] INVERSE = new int[Rotor.ROTORS.length][N];
+
+	static {
+		for (int r = 0; r < Rotor.ROTORS.length; r++)
+			for (int i = 0; i < N; i++)
+				INVERSE[r][Rotor.ROTORS[r][i]] = i;
+	}
+
+	/**
+	 * Adds 26 to the lanes that went below A.
+	 *
+	 * @param letters the letters, -26 to 25
+	 * @return the letters, 0 to 25
+	 */
+	private static IntVector wrapDown(IntVector letters) {
+		return letters.add(N, letters.compare(VectorOperators.LT, 0));
+	}
+
+	/**
+	 * Subtracts 26 from the lanes that went past Z.
+	 *
+	 * @param letters the letters, 0 to 51
+	 * @return the letters, 0 to 25
+	 */
+	private static IntVector wrapUp(IntVector letters) {
+		return letters.sub(N, letters.compare(VectorOperators.GE, N));
+	}
+
+	private final VectorSpecies<Integer> species;
+	private final int lanes;
+
+	/* Start positions of the current vector's messages */
+	private final int[] dial1;
+	private final int[] dial2;
+	private final int[] dial3;
+
+	/** Transposed letters of the current vector's messages, one row per letter */
+	private int[] letters = new int[0];
+
+	/**
+	 * Creates an engine with the preferred vector shape of the platform.
+	 */
+	public VectorEnigma() {
+		this(IntVector.SPECIES_PREFERRED);
+	}
+
+	/**
+	 * Creates an engine with a given vector shape.
+	 *
+	 * @param species the vector species, which sets the number of lanes
+	 * @throws IllegalArgumentException if the species has less than 2 lanes
+	 */
+	public VectorEnigma(VectorSpecies<Integer> species) {
+		this.species = Objects.requireNonNull(species, "species");
+		this.lanes = species.length();
+		if (lanes < 2 || Integer.bitCount(lanes) != 1)
+			throw new IllegalArgumentException("expected a power of 2 lanes " + species);
+
+		this.dial1 = new int[lanes];
+		this.dial2 = new int[lanes];
+		this.dial3 = new int[lanes];
+	}
+
+	/**
+	 * Encrypts messages, each with its own key. Enigma decryption is the same
+	 * operation, so cypher texts with their keys are decrypted as well.
+	 *
+	 * @param requests the messages and their keys, letters A to Z
+	 * @return the results, in the order of the requests
+	 * @throws IllegalArgumentException if a key is invalid or a message contains
+	 *                                  characters other than letters A to Z
+	 */
+	public List<String> encryptAll(List<MessageRequest> requests) {
+		final Map<String, List<Integer>> groups = new LinkedHashMap<>();
+		for (int i = 0; i < requests.size(); i++) {
+			final MessageRequest request = requests.get(i);
+			final String settings = request.getRotors() + '/' + request.getReflector() + '/' + request.getPlugboard();
+
+			groups.computeIfAbsent(settings, k -> new ArrayList<>()).add(i);
+		}
+
+		final String[] results = new String[requests.size()];
+		for (List<Integer> group : groups.values()) {
+			final Key key = new Key(requests.get(group.get(0)));
+			group.sort(Comparator.comparingInt(i -> requests.get(i).getText().length()));
+
+			for (int from = 0; from < group.size(); from += lanes)
+				encryptVector(key, requests, group.subList(from, Math.min(from + lanes, group.size())), results);
+		}
+
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Encrypts up to one message per lane, all under the same key.
+	 *
+	 * @param key      the shared settings
+	 * @param requests all the requests
+	 * @param indexes  the indexes of this vector's requests
+	 * @param results  receives the results by request index
+	 */
+	private void encryptVector(Key key, List<MessageRequest> requests, List<Integer> indexes, String[] results) {
+		final int count = indexes.size();
+
+		int maxLength = 0;
+		for (int lane = 0; lane < lanes; lane++) {
+			final int[] positions = (lane < count)
+					? Rotor.parseDialString(requests.get(indexes.get(lane)).getPositions())
+					: new int[3];
+
+			for (int position : positions)
+				if (position < 0 || position >= N)
+					throw new IllegalArgumentException("invalid rotor position "
+							+ requests.get(indexes.get(lane)).getPositions());
+
+			dial1[lane] = positions[0];
+			dial2[lane] = positions[1];
+			dial3[lane] = positions[2];
+
+			if (lane < count)
+				maxLength = Math.max(maxLength, requests.get(indexes.get(lane)).getText().length());
+		}
+
+		if (letters.length < maxLength * lanes)
+			letters = new int[maxLength * lanes];
+		else
+			Arrays.fill(letters, 0, maxLength * lanes, 0);
+
+		for (int lane = 0; lane < count; lane++) {
+			final String text = requests.get(indexes.get(lane)).getText();
+			for (int i = 0; i < text.length(); i++) {
+				final char ch = text.charAt(i);
+				if (ch < 'A' || ch > 'Z')
+					throw new IllegalArgumentException("expected letters A to Z, found '" + ch + "'");
+
+				letters[i * lanes + lane] = ch - 'A';
+			}
+		}
+
+		process(key, maxLength);
+
+		for (int lane = 0; lane < count; lane++) {
+			final int len = requests.get(indexes.get(lane)).getText().length();
+			final char[] chars = new char[len];
+			for (int i = 0; i < len; i++)
+				chars[i] = (char) ('A' + letters[i * lanes + lane]);
+
+			results[indexes.get(lane)] = new String(chars);
+		}
+	}
+
+	/**
+	 * Gets the number of messages encrypted at once.
+	 *
+	 * @return the number of vector lanes
+	 */
+	public int lanes() {
+		return lanes;
+	}
+
+	/**
+	 * Runs the transposed letters of the current vector through the machine, in
+	 * place.
+	 *
+	 * @param key    the shared settings
+	 * @param length the number of letters in the longest message
+	 */
+	private void process(Key key, int length) {
+		final IntVector n1 = IntVector.broadcast(species, key.notch1);
+		final IntVector n2 = IntVector.broadcast(species, key.notch2);
+
+		IntVector d1 = IntVector.fromArray(species, dial1, 0);
+		IntVector d2 = IntVector.fromArray(species, dial2, 0);
+		IntVector d3 = IntVector.fromArray(species, dial3, 0);
+
+		for (int i = 0; i < length; i++) {
+
+			/*
+			 * Step: rotor1 always advances, rotor2 when rotor1 leaves its notch or
+			 * double steps off its own notch, rotor3 when rotor2 leaves its notch
+			 */
+			final VectorMask<Integer> atNotch1 = d1.compare(VectorOperators.EQ, n1);
+			final VectorMask<Integer> atNotch2 = d2.compare(VectorOperators.EQ, n2);
+
+			d1 = wrapUp(d1.add(1));
+			d2 = wrapUp(d2.add(1, atNotch1.or(atNotch2)));
+			d3 = wrapUp(d3.add(1, atNotch2));
+
+			IntVector ch = IntVector.fromArray(species, letters, i * lanes);
+
+			ch = key.plugboard.lookup(ch);
+			ch = rotor(key.forward[0], d1, ch);
+			ch = rotor(key.forward[1], d2, ch);
+			ch = rotor(key.forward[2], d3, ch);
+			ch = key.reflector.lookup(ch);
+			ch = rotor(key.reverse[2], d3, ch);
+			ch = rotor(key.reverse[1], d2, ch);
+			ch = rotor(key.reverse[0], d1, ch);
+			ch = key.plugboard.lookup(ch);
+
+			ch.intoArray(letters, i * lanes);
+		}
+	}
+
+	/**
+	 * Passes letters through a rotor at the dial of each lane.
+	 *
+	 * @param wiring  the rotor wiring, forward or reverse
+	 * @param dials   the dial of each lane
+	 * @param letters the entering letters
+	 * @return the exiting letters
+	 */
+	private static IntVector rotor(Table wiring, IntVector dials, IntVector letters) {
+		final IntVector contact = wrapUp(letters.add(dials));
+
+		return wrapDown(wiring.lookup(contact).sub(dials));
+	}
+
+	/**
+	 * Gets the number of wiring table slices.
+	 *
+	 * @return the number of slices
+	 */
+	private int slices() {
+		return (N + lanes - 1) / lanes;
+	}
+}